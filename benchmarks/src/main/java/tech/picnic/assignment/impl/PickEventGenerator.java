@@ -0,0 +1,70 @@
+package tech.picnic.assignment.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.Random;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Generates reproducible, synthetic pick event streams with a tunable shape. */
+final class PickEventGenerator {
+
+    private static final Instant SHIFT_START = Instant.parse("2018-12-20T08:00:00Z");
+    private static final int ARTICLES = 2_000;
+    private static final String EVENT = "{\"timestamp\":\"%s\",\"id\":\"%d\",\"picker\":{\"id\":\"%d\",\"name\":\"Picker %d\",\"active_since\":\"%s\"}," +
+            "\"article\":{\"id\":\"%d\",\"name\":\"ACME Article %d\",\"temperature_zone\":\"%s\"},\"quantity\":%d}\n";
+
+    private final int events;
+    private final int pickers;
+    private final double chilledRatio;
+    private final double malformedRate;
+    private final int disorderSeconds;
+
+    /**
+     * @param events the number of events (lines) to generate
+     * @param pickers the number of distinct pickers the events are spread over
+     * @param chilledRatio the fraction of events which pick a chilled article
+     * @param malformedRate the fraction of lines which are not valid pick events
+     * @param disorderSeconds how far back in time an event's timestamp may lie relative to its position in the stream
+     */
+    PickEventGenerator(int events, int pickers, double chilledRatio, double malformedRate, int disorderSeconds) {
+        this.events = events;
+        this.pickers = pickers;
+        this.chilledRatio = chilledRatio;
+        this.malformedRate = malformedRate;
+        this.disorderSeconds = disorderSeconds;
+    }
+
+    byte[] generate() {
+        final var random = new Random(42);
+        final var output = new ByteArrayOutputStream(events * 256);
+        for (var i = 0; i < events; i++) {
+            final var line = random.nextDouble() < malformedRate ? malformedLine(random, i) : event(random, i);
+            output.writeBytes(line.getBytes(UTF_8));
+        }
+        return output.toByteArray();
+    }
+
+    private String event(Random random, int index) {
+        final var picker = random.nextInt(pickers);
+        final var article = random.nextInt(ARTICLES);
+        final var disorder = disorderSeconds > 0 ? random.nextInt(disorderSeconds + 1) : 0;
+        return format(EVENT,
+                SHIFT_START.plusSeconds(index - disorder + disorderSeconds),
+                index,
+                picker,
+                picker,
+                // pickers clock in on every full minute, so several of them share an active_since
+                SHIFT_START.minusSeconds(60L * (picker % 120)),
+                article,
+                article,
+                random.nextDouble() < chilledRatio ? "chilled" : "ambient",
+                1 + random.nextInt(5));
+    }
+
+    private String malformedLine(Random random, int index) {
+        final var event = event(random, index);
+        return random.nextBoolean() ? "{this is a malformed pick event}\n" : event.substring(0, event.length() / 2) + '\n';
+    }
+}
@@ -0,0 +1,250 @@
+package tech.picnic.assignment.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import tech.picnic.assignment.model.Article;
+import tech.picnic.assignment.model.PickRequest;
+import tech.picnic.assignment.model.Picker;
+import tech.picnic.assignment.model.TemperatureZone;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.fasterxml.jackson.core.JsonToken.FIELD_NAME;
+import static com.fasterxml.jackson.core.JsonToken.VALUE_NULL;
+import static com.fasterxml.jackson.core.JsonToken.VALUE_NUMBER_INT;
+import static com.fasterxml.jackson.core.JsonToken.VALUE_STRING;
+import static com.fasterxml.jackson.databind.DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE;
+
+/**
+ * Binds {@link PickRequest}s, and their {@link Picker}s and {@link Article}s, with deserializers
+ * written for exactly their fields, rather than through the introspected creators of generic
+ * databinding. Fields are told apart by a switch over their interned names, and the immutable
+ * objects are built directly.
+ *
+ * <p>The result is the same as that of generic binding. The common shapes of the feed, such as
+ * string ids and UTC timestamps of the common format, are handled inline; anything else is left to
+ * the deserializers which generic binding would use, so that unusual input is accepted, or
+ * rejected, just the same. Unknown fields go through {@link
+ * DeserializationContext#handleUnknownProperty}, which rejects them unless {@code
+ * FAIL_ON_UNKNOWN_PROPERTIES} is disabled, in which case they are skipped without being bound.
+ *
+ * <p>The processor itself decodes events with {@link PickDecoder}, without binding them, so the
+ * module is only registered by the benchmarks which compare it with generic binding. Its tests,
+ * which check that both bind the same, run with the benchmarks' build, which {@code mvn verify} of
+ * the processor runs as well.
+ */
+final class PickRequestModule extends SimpleModule {
+
+    PickRequestModule() {
+        super(PickRequestModule.class.getSimpleName());
+        addDeserializer(PickRequest.class, new PickRequestDeserializer());
+        addDeserializer(Picker.class, new PickerDeserializer());
+        addDeserializer(Article.class, new ArticleDeserializer());
+    }
+
+    /** The deserializers of the field types, as generic binding would use them. */
+    private abstract static class ModelDeserializer<T> extends StdDeserializer<T> implements ResolvableDeserializer {
+        private final Class<T> type;
+        private JsonDeserializer<?> strings;
+        private JsonDeserializer<?> integers;
+        private JsonDeserializer<?> timestamps;
+
+        private ModelDeserializer(Class<T> type) {
+            super(type);
+            this.type = type;
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            strings = ctxt.findRootValueDeserializer(ctxt.constructType(String.class));
+            integers = ctxt.findRootValueDeserializer(ctxt.constructType(Integer.class));
+            timestamps = ctxt.findRootValueDeserializer(ctxt.constructType(ZonedDateTime.class));
+        }
+
+        @Override
+        public T deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            final String first;
+            if (p.isExpectedStartObjectToken()) first = p.nextFieldName();
+            else if (p.hasToken(FIELD_NAME)) first = p.getCurrentName();
+            else return type.cast(ctxt.handleUnexpectedToken(type, p));
+
+            final var fields = newFields();
+            for (var field = first; field != null; field = p.nextFieldName()) {
+                p.nextToken();
+                if (!readField(field, p, ctxt, fields)) ctxt.handleUnknownProperty(p, this, type, field);
+            }
+            return build(fields);
+        }
+
+        /** A holder for the field values read so far. */
+        abstract Object[] newFields();
+
+        /** Reads the value at which the parser is positioned, returning {@code false} if the field is unknown. */
+        abstract boolean readField(String field, JsonParser p, DeserializationContext ctxt, Object[] fields) throws IOException;
+
+        abstract T build(Object[] fields);
+
+        String readString(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(VALUE_STRING)) return p.getText();
+            if (p.hasToken(VALUE_NULL)) return null;
+            return (String) strings.deserialize(p, ctxt);
+        }
+
+        Integer readInteger(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(VALUE_NUMBER_INT) && p.getNumberType() == JsonParser.NumberType.INT) return p.getIntValue();
+            if (p.hasToken(VALUE_NULL)) return null;
+            return (Integer) integers.deserialize(p, ctxt);
+        }
+
+        ZonedDateTime readTimestamp(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(VALUE_NULL)) return null;
+            if (p.hasToken(VALUE_STRING) && ctxt.isEnabled(ADJUST_DATES_TO_CONTEXT_TIME_ZONE) && "UTC".equals(ctxt.getTimeZone().getID())) {
+                final var nanos = TimestampCodec.parseCommonFormat(p.getText());
+                if (nanos != TimestampCodec.NOT_PARSED) return TimestampCodec.toZonedDateTime(nanos);
+            }
+            return (ZonedDateTime) timestamps.deserialize(p, ctxt);
+        }
+    }
+
+    private static final class PickRequestDeserializer extends ModelDeserializer<PickRequest> {
+        private JsonDeserializer<?> pickers;
+        private JsonDeserializer<?> articles;
+
+        private PickRequestDeserializer() {
+            super(PickRequest.class);
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            super.resolve(ctxt);
+            pickers = ctxt.findRootValueDeserializer(ctxt.constructType(Picker.class));
+            articles = ctxt.findRootValueDeserializer(ctxt.constructType(Article.class));
+        }
+
+        @Override
+        Object[] newFields() {
+            return new Object[5];
+        }
+
+        @Override
+        boolean readField(String field, JsonParser p, DeserializationContext ctxt, Object[] fields) throws IOException {
+            switch (field) {
+                case "id":
+                    fields[0] = readString(p, ctxt);
+                    return true;
+                case "timestamp":
+                    fields[1] = readTimestamp(p, ctxt);
+                    return true;
+                case "picker":
+                    fields[2] = p.hasToken(VALUE_NULL) ? null : pickers.deserialize(p, ctxt);
+                    return true;
+                case "article":
+                    fields[3] = p.hasToken(VALUE_NULL) ? null : articles.deserialize(p, ctxt);
+                    return true;
+                case "quantity":
+                    fields[4] = readInteger(p, ctxt);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        PickRequest build(Object[] fields) {
+            return new PickRequest((String) fields[0], (ZonedDateTime) fields[1], (Picker) fields[2], (Article) fields[3], (Integer) fields[4]);
+        }
+    }
+
+    private static final class PickerDeserializer extends ModelDeserializer<Picker> {
+
+        private PickerDeserializer() {
+            super(Picker.class);
+        }
+
+        @Override
+        Object[] newFields() {
+            return new Object[3];
+        }
+
+        @Override
+        boolean readField(String field, JsonParser p, DeserializationContext ctxt, Object[] fields) throws IOException {
+            switch (field) {
+                case "id":
+                    fields[0] = readString(p, ctxt);
+                    return true;
+                case "name":
+                    fields[1] = readString(p, ctxt);
+                    return true;
+                case "active_since":
+                    fields[2] = readTimestamp(p, ctxt);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        Picker build(Object[] fields) {
+            return new Picker((String) fields[0], (String) fields[1], (ZonedDateTime) fields[2]);
+        }
+    }
+
+    private static final class ArticleDeserializer extends ModelDeserializer<Article> {
+        private final Map<String, TemperatureZone> temperatureZones = new HashMap<>();
+        private JsonDeserializer<?> otherTemperatureZones;
+
+        private ArticleDeserializer() {
+            super(Article.class);
+            for (final var temperatureZone : TemperatureZone.values()) {
+                temperatureZones.put(temperatureZone.getDisplayName(), temperatureZone);
+            }
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            super.resolve(ctxt);
+            otherTemperatureZones = ctxt.findRootValueDeserializer(ctxt.constructType(TemperatureZone.class));
+        }
+
+        @Override
+        Object[] newFields() {
+            return new Object[3];
+        }
+
+        @Override
+        boolean readField(String field, JsonParser p, DeserializationContext ctxt, Object[] fields) throws IOException {
+            switch (field) {
+                case "id":
+                    fields[0] = readString(p, ctxt);
+                    return true;
+                case "name":
+                    fields[1] = readString(p, ctxt);
+                    return true;
+                case "temperature_zone":
+                    fields[2] = readTemperatureZone(p, ctxt);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private TemperatureZone readTemperatureZone(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(VALUE_NULL)) return null;
+            final var temperatureZone = p.hasToken(VALUE_STRING) ? temperatureZones.get(p.getText()) : null;
+            return temperatureZone != null ? temperatureZone : (TemperatureZone) otherTemperatureZones.deserialize(p, ctxt);
+        }
+
+        @Override
+        Article build(Object[] fields) {
+            return new Article((String) fields[0], (String) fields[1], (TemperatureZone) fields[2]);
+        }
+    }
+}
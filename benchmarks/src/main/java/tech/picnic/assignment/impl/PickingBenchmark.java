@@ -0,0 +1,256 @@
+package tech.picnic.assignment.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tech.picnic.assignment.impl.PickAggregator.PickerPicks;
+import tech.picnic.assignment.model.PickRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static tech.picnic.assignment.impl.PickingStreamProcessor.REQUIRED_TEMPERATURE_ZONE;
+import static tech.picnic.assignment.impl.Utilities.OBJECT_MAPPER;
+
+/**
+ * Measures the processing phases separately and end to end. Next to the batch throughput, every
+ * benchmark reports an {@code events} rate: the number of input events handled per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PickingBenchmark {
+
+    private static final Duration MAX_TIME = Duration.ofHours(1);
+    /** Binds through introspected creators alone, as the processor's mapper does. */
+    private static final ObjectMapper GENERIC_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule());
+    private static final ObjectMapper SPECIALISED_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule()).registerModule(new PickRequestModule());
+
+    @Param("100000")
+    private int events;
+
+    @Param("300")
+    private int pickers;
+
+    @Param("0.5")
+    private double chilledRatio;
+
+    @Param("0.01")
+    private double malformedRate;
+
+    @Param("60")
+    private int disorderSeconds;
+
+    @Param("1")
+    private int parseWorkers;
+
+    @Param("false")
+    private boolean offHeap;
+
+    @Param("1")
+    private int aggregationShards;
+
+    /**
+     * The format of the input and output, to be compared with {@code -p format=JSON,SMILE,CBOR}.
+     * Binary inputs hold the same events, minus the malformed lines that cannot be re-encoded.
+     */
+    @Param("JSON")
+    private DataFormat format;
+
+    private final PickInterner interner = new PickInterner(1_000, 10_000);
+
+    private byte[] input;
+    private String[] lines;
+    private Path inputFile;
+    private List<PickEvent> picks;
+    private List<PickerPicks> sortedPickers;
+    private int retainedPicks;
+
+    @Setup
+    public void setUp() throws IOException {
+        final var lines = new PickEventGenerator(events, pickers, chilledRatio, malformedRate, disorderSeconds).generate();
+        input = format.isText() ? lines : encode(lines);
+        inputFile = Files.createTempFile("picks-", format.isText() ? ".json-stream" : ".bin");
+        Files.write(inputFile, input);
+
+        this.lines = new String(lines, UTF_8).split("\n");
+        picks = new ArrayList<>(events);
+        for (final var line : this.lines) {
+            try {
+                picks.add(PickEvent.of(OBJECT_MAPPER.readValue(line, PickRequest.class)));
+            } catch (IOException e) {
+                // malformed lines never reach the aggregator
+            }
+        }
+
+        sortedPickers = aggregate(picks).sortedPickers();
+        retainedPicks = sortedPickers.stream().mapToInt(picker -> picker.size()).sum();
+    }
+
+    @Benchmark
+    public void parse(EventCounter counter, Blackhole blackhole) {
+        newSourceReader().readLines(new ByteArrayInputStream(input), blackhole::consume);
+        counter.events += events;
+    }
+
+    /** Parses the same input from a file, which is memory-mapped rather than read as a stream. */
+    @Benchmark
+    public void parseFile(EventCounter counter, Blackhole blackhole) throws IOException {
+        try (final var source = new FileInputStream(inputFile.toFile())) {
+            newSourceReader().readLines(source, blackhole::consume);
+        }
+        counter.events += events;
+    }
+
+    /** Binds every line to a {@link PickRequest} through generic databinding. */
+    @Benchmark
+    public void bindGeneric(EventCounter counter, Blackhole blackhole) {
+        bind(GENERIC_MAPPER, blackhole);
+        counter.events += lines.length;
+    }
+
+    /** Binds every line to a {@link PickRequest} through the deserializers of {@link PickRequestModule}. */
+    @Benchmark
+    public void bindSpecialised(EventCounter counter, Blackhole blackhole) {
+        bind(SPECIALISED_MAPPER, blackhole);
+        counter.events += lines.length;
+    }
+
+    @Benchmark
+    public PickAggregator aggregate(EventCounter counter) {
+        counter.events += picks.size();
+        return aggregate(picks);
+    }
+
+    @Benchmark
+    public List<PickerPicks> sort(UnsortedPicks unsorted, EventCounter counter) {
+        counter.events += picks.size();
+        return unsorted.aggregator.sortedPickers();
+    }
+
+    @Benchmark
+    public void serialize(EventCounter counter, Blackhole blackhole) throws IOException {
+        new PickWriter(format).write(sortedPickers, new BlackholeOutputStream(blackhole));
+        counter.events += retainedPicks;
+    }
+
+    @Benchmark
+    public void endToEnd(EventCounter counter, Blackhole blackhole) throws IOException {
+        try (final var processor = new PickingStreamProcessor(newSourceReader(), this::newAggregation, new ProcessorMetrics(), config(), OutputBudget.unreserved())) {
+            processor.process(new ByteArrayInputStream(input), new BlackholeOutputStream(blackhole));
+        }
+        counter.events += events;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(inputFile);
+    }
+
+    /** Re-encodes every well-formed line as a record of a single binary stream. */
+    private byte[] encode(byte[] lines) throws IOException {
+        final var mapper = new ObjectMapper(format.factory().copy());
+        final var encoded = new ByteArrayOutputStream(lines.length);
+        try (final var generator = mapper.getFactory().createGenerator(encoded)) {
+            for (final var line : new String(lines, UTF_8).split("\n")) {
+                final JsonNode event;
+                try {
+                    event = OBJECT_MAPPER.readTree(line);
+                } catch (IOException e) {
+                    continue;
+                }
+                mapper.writeTree(generator, event);
+            }
+        }
+        return encoded.toByteArray();
+    }
+
+    private void bind(ObjectMapper mapper, Blackhole blackhole) {
+        final var reader = mapper.readerFor(PickRequest.class);
+        for (final var line : lines) {
+            try {
+                blackhole.consume(reader.readValue(line));
+            } catch (IOException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    private SourceReader newSourceReader() {
+        return new SourceReader(events, MAX_TIME, new PickDecoder(REQUIRED_TEMPERATURE_ZONE, interner), config(), new ProcessorMetrics(),
+                ProcessorExecutors.defaults(), OutputBudget.unreserved());
+    }
+
+    private ProcessorConfig config() {
+        return ProcessorConfig.builder().parseWorkers(parseWorkers).outputFormat(format).build();
+    }
+
+    private PickAggregator aggregate(List<PickEvent> picks) {
+        final var aggregator = newAggregator();
+        picks.forEach(aggregator);
+        return aggregator;
+    }
+
+    private PickAggregator newAggregator() {
+        return new PickAggregator(config(), interner, offHeap ? PickColumns.offHeap() : PickColumns.onHeap());
+    }
+
+    private Aggregation newAggregation() {
+        return aggregationShards > 1 ? new ShardedAggregation(aggregationShards, this::newAggregator) : newAggregator();
+    }
+
+    /** A freshly filled aggregator for every invocation, as sorting happens in place. */
+    @State(Scope.Thread)
+    public static class UnsortedPicks {
+        private PickAggregator aggregator;
+
+        @Setup(Level.Invocation)
+        public void setUp(PickingBenchmark benchmark) {
+            aggregator = benchmark.aggregate(benchmark.picks);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class EventCounter {
+        public long events;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            events = 0;
+        }
+    }
+
+    private static final class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        private BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package tech.picnic.assignment.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import tech.picnic.assignment.model.PickRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PickRequestModuleTest {
+
+    private static final String ambientPick = "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"id\":\"2344\",\"picker\":{\"id\":\"14\",\"name\":\"Joris\",\"active_since\":\"2018-09-20T08:20:00Z\"}," +
+            "\"article\":{\"id\":\"13473\",\"name\":\"ACME Bananas\",\"temperature_zone\":\"ambient\"},\"quantity\":2}";
+
+    /** Binds through introspection alone. */
+    private static final ObjectMapper genericMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private static final ObjectMapper specialisedMapper = new ObjectMapper().registerModule(new JavaTimeModule()).registerModule(new PickRequestModule());
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            ambientPick,
+            "{\"timestamp\":\"2018-12-20T12:50:48.250+01:00\",\"picker\":{\"id\":14,\"active_since\":\" 2018-09-20T08:20:00Z \"},\"article\":{\"temperature_zone\":\"chilled\"},\"quantity\":\" 7 \"}",
+            "{\"timestamp\":1545306648.5,\"picker\":null,\"article\":{\"id\":true,\"temperature_zone\":\"1\"},\"quantity\":2.9}",
+            "{\"timestamp\":\"2018-12-20T11:50:48+01:00[Europe/Amsterdam]\",\"id\":null,\"quantity\":null,\"timestamp\":\"2018-12-20T11:50:48.123456789Z\"}",
+            "{}"
+    })
+    @DisplayName("should bind the same picks as generic binding")
+    void testBind(String line) throws IOException {
+        var expected = genericMapper.readValue(line, PickRequest.class);
+        var actual = specialisedMapper.readValue(line, PickRequest.class);
+
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual.toString()).isEqualTo(expected.toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "[]",
+            "{\"id\":{}}",
+            "{\"unknown\":1}",
+            "{\"picker\":{\"nickname\":\"J\"}}",
+            "{\"quantity\":\"two\"}",
+            "{\"quantity\":2147483648}",
+            "{\"timestamp\":\"yesterday\"}",
+            "{\"article\":{\"temperature_zone\":\"frozen\"}}"
+    })
+    @DisplayName("should reject the same picks as generic binding")
+    void testReject(String line) {
+        assertThatThrownBy(() -> genericMapper.readValue(line, PickRequest.class)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> specialisedMapper.readValue(line, PickRequest.class)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    @DisplayName("should skip unknown fields if the mapper allows them")
+    void testIgnoreUnknown() throws IOException {
+        var line = ambientPick.replace("\"quantity\"", "\"unknown\":{\"nested\":[1,2]},\"quantity\"");
+        var lenient = specialisedMapper.readerFor(PickRequest.class).without(FAIL_ON_UNKNOWN_PROPERTIES);
+
+        assertThat(lenient.<PickRequest>readValue(line).toString()).isEqualTo(specialisedMapper.readValue(ambientPick, PickRequest.class).toString());
+    }
+
+    @Test
+    @DisplayName("should bind the same picks as generic binding, however a line is mangled")
+    void testMangled() {
+        var random = new Random(42);
+        var fragments = List.of("\"", "{", "}", "[", "]", ":", ",", " ", "1", "null", "true", "\"x\"", "+01:00", ".5", "chilled");
+        var bound = 0;
+        for (int i = 0; i < 20_000; i++) {
+            var line = new StringBuilder(ambientPick);
+            for (int edit = random.nextInt(3); edit >= 0; edit--) {
+                var at = random.nextInt(line.length());
+                if (random.nextBoolean()) line.deleteCharAt(at);
+                else line.insert(at, fragments.get(random.nextInt(fragments.size())));
+            }
+
+            var text = line.toString();
+            var expected = bind(genericMapper, text);
+            assertThat(bind(specialisedMapper, text)).as(text).isEqualTo(expected);
+            if (!expected.equals("rejected")) bound++;
+        }
+        assertThat(bound).isGreaterThan(1_000);
+    }
+
+    private static String bind(ObjectMapper mapper, String line) {
+        try {
+            return String.valueOf(mapper.readValue(line, PickRequest.class));
+        } catch (IOException | RuntimeException e) {
+            return "rejected";
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package tech.picnic.assignment.impl;
+
+import tech.picnic.assignment.impl.PickAggregator.PickerPicks;
+import tech.picnic.assignment.model.Picker;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/** Collects picks while they are read, and hands them out grouped by picker once reading is done. */
+interface Aggregation extends Consumer<PickEvent>, AutoCloseable {
+
+    /**
+     * Returns the pickers sorted by their activity start and ID, each with its picks in chronological
+     * order. Further picks may be accepted afterwards, after which this returns all of them again.
+     */
+    List<PickerPicks> sortedPickers();
+
+    /**
+     * Adds a pick which was retained before, such as one restored from a snapshot, without filtering
+     * it again. The article name is the upper-cased one.
+     */
+    void acceptRetained(Picker picker, long timestamp, String articleName);
+
+    /**
+     * Hands every retained pick to the consumer, the picks of each picker in the order in which they
+     * were accepted. Must not be called while picks are being accepted.
+     */
+    void forEachRetained(RetainedPickConsumer picks);
+
+    /**
+     * The number of retained picks, including any spilled to disk. Must not be called while picks
+     * are being accepted.
+     */
+    int size();
+
+    /**
+     * Drops all picks, keeping the allocated storage, so that the aggregation can be reused for the
+     * next window. Pickers returned earlier must no longer be read.
+     */
+    void reset();
+
+    /** Releases the resources held by the aggregation, whether or not its picks were handed out. */
+    @Override
+    default void close() {
+    }
+
+    interface RetainedPickConsumer {
+        void accept(Picker picker, long timestamp, String articleName);
+    }
+}
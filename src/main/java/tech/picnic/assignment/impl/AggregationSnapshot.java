@@ -0,0 +1,183 @@
+package tech.picnic.assignment.impl;
+
+import lombok.Value;
+import tech.picnic.assignment.model.Picker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Saves the retained picks of an aggregation to a file, and restores them into another one, so
+ * that the state of the aggregation outlives the process. Pickers and article names are written
+ * once, when first seen, and referred to by index after that; every pick then takes its picker and
+ * article index, as variable-length integers, and its timestamp.
+ *
+ * <p>A snapshot is written next to the file it replaces and moved over it once complete, so the
+ * file always holds a whole snapshot.
+ */
+final class AggregationSnapshot {
+
+    private static final int MAGIC = 0x5049_434B;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int END = 0;
+    private static final int PICKER = 1;
+    private static final int ARTICLE = 2;
+    private static final int PICK = 3;
+
+    private AggregationSnapshot() {}
+
+    /** Replaces the file with a snapshot of the aggregation's retained picks. */
+    static void save(Aggregation aggregation, Path file) throws IOException {
+        final var directory = file.toAbsolutePath().getParent();
+        final var temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (final var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE))) {
+                write(aggregation, output);
+            }
+            Files.move(temporary, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /** Adds the picks of the snapshot in the file to the aggregation. Returns {@code false} if there is no such file. */
+    static boolean restore(Path file, Aggregation aggregation) throws IOException {
+        try (final var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            read(input, aggregation);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    static void write(Aggregation aggregation, DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+
+        final Map<PickerRecord, Integer> pickers = new HashMap<>();
+        final Map<String, Integer> articles = new HashMap<>();
+        try {
+            aggregation.forEachRetained((picker, timestamp, articleName) -> {
+                try {
+                    final var pickerRecord = new PickerRecord(picker.getId(), picker.getName(), TimestampCodec.toEpochNanos(picker.getActiveSince()));
+                    var pickerIndex = pickers.get(pickerRecord);
+                    if (pickerIndex == null) {
+                        pickerIndex = pickers.size();
+                        pickers.put(pickerRecord, pickerIndex);
+                        output.writeByte(PICKER);
+                        writeString(output, pickerRecord.id);
+                        output.writeBoolean(pickerRecord.name != null);
+                        if (pickerRecord.name != null) writeString(output, pickerRecord.name);
+                        output.writeLong(pickerRecord.activeSince);
+                    }
+                    var articleIndex = articles.get(articleName);
+                    if (articleIndex == null) {
+                        articleIndex = articles.size();
+                        articles.put(articleName, articleIndex);
+                        output.writeByte(ARTICLE);
+                        writeString(output, articleName);
+                    }
+                    output.writeByte(PICK);
+                    writeVarInt(output, pickerIndex);
+                    writeVarInt(output, articleIndex);
+                    output.writeLong(timestamp);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.writeByte(END);
+    }
+
+    static void read(DataInput input, Aggregation aggregation) throws IOException {
+        if (input.readInt() != MAGIC) throw new IOException("Not a snapshot of picks");
+        final var version = input.readUnsignedByte();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version: " + version);
+
+        final List<Picker> pickers = new ArrayList<>();
+        final List<String> articles = new ArrayList<>();
+        int record;
+        while ((record = input.readUnsignedByte()) != END) {
+            switch (record) {
+                case PICKER:
+                    final var id = readString(input);
+                    final var name = input.readBoolean() ? readString(input) : null;
+                    pickers.add(new Picker(id, name, TimestampCodec.toZonedDateTime(input.readLong())));
+                    break;
+                case ARTICLE:
+                    articles.add(readString(input));
+                    break;
+                case PICK:
+                    final var picker = pickers.get(readVarInt(input));
+                    final var article = articles.get(readVarInt(input));
+                    aggregation.acceptRetained(picker, input.readLong(), article);
+                    break;
+                default:
+                    throw new IOException("Corrupt snapshot of picks, unknown record: " + record);
+            }
+        }
+    }
+
+    /**
+     * A picker as written to a snapshot. Pickers are told apart by all of their fields, rather than
+     * by their ID alone as {@link Picker#equals} does, so that every pick is restored with the
+     * picker it was retained with.
+     */
+    @Value
+    private static class PickerRecord {
+        String id;
+        String name;
+        long activeSince;
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        final var bytes = value.getBytes(UTF_8);
+        writeVarInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        final var bytes = new byte[readVarInt(input)];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeVarInt(DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput input) throws IOException {
+        var value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final var b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt snapshot of picks, malformed integer");
+    }
+}
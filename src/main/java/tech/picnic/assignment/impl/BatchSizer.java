@@ -0,0 +1,33 @@
+package tech.picnic.assignment.impl;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Chooses how many lines a producer gathers into one batch before handing it over. A batch is
+ * always handed over as soon as the source has no more bytes available, so a trickle of events is
+ * passed on as it arrives. Under a burst, the size follows the backlog of batches waiting for the
+ * consumer: while batches pile up, the consumer is the bottleneck and larger batches save it the
+ * overhead per hand-over; while none wait, it is idle and smaller batches get it going sooner.
+ */
+final class BatchSizer {
+
+    static final int MIN_LINES = 64;
+    static final int MAX_LINES = 16_384;
+
+    /** The backlog from which batches grow, as the consumer evidently cannot keep up. */
+    private static final int GROWING_BACKLOG = 2;
+
+    private int targetLines = MIN_LINES;
+
+    /** The number of lines after which a batch is handed over, even if more bytes are available. */
+    int targetLines() {
+        return targetLines;
+    }
+
+    /** Adapts the size of the next batches to the number of batches found waiting after handing one over. */
+    void record(int backlog) {
+        if (backlog >= GROWING_BACKLOG) targetLines = min(MAX_LINES, 2 * targetLines);
+        else if (backlog == 0) targetLines = max(MIN_LINES, targetLines / 2);
+    }
+}
@@ -0,0 +1,102 @@
+package tech.picnic.assignment.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Thread.currentThread;
+
+/**
+ * Reads the records of a Smile or CBOR stream, one root-level value per event. A single parser
+ * reads the whole stream, as later records may refer back to names in earlier ones, so records are
+ * decoded as they are read.
+ *
+ * <p>Whether complete records are waiting cannot be told from the source, as the parser buffers
+ * it. Instead, the decoded records are handed over whenever the parser is about to read from the
+ * source while it has no bytes available, as that read could block on an incomplete record.
+ */
+final class BinaryRecords {
+
+    /** Receives the batches of decoded records, in the order in which they were read. */
+    interface BatchSink {
+        void put(LineBatch batch) throws InterruptedException;
+    }
+
+    private final InputStream source;
+    private final PickDecoder decoder;
+    private final BatchSizer sizer;
+    private final EventBudget budget;
+    private final BatchSink sink;
+    private final JsonParser parser;
+    private List<PickEvent> records = new ArrayList<>();
+    private long[] ends;
+    private long start;
+
+    BinaryRecords(InputStream source, DataFormat format, PickDecoder decoder, BatchSizer sizer, EventBudget budget, BatchSink sink) throws IOException {
+        this.source = source;
+        this.decoder = decoder;
+        this.sizer = sizer;
+        this.budget = budget;
+        this.sink = sink;
+        this.ends = new long[sizer.targetLines()];
+        // the parser is deliberately never closed, as that would close the source as well
+        this.parser = format.factory().createParser(new HandingOverInput());
+        this.start = parser.getCurrentLocation().getByteOffset();
+    }
+
+    /**
+     * Reads records until the end of the stream, until the budget is used up, or until the thread
+     * is interrupted, handing them over in batches of up to the sizer's target. A record is only
+     * decoded once the budget allows it, so no record is decoded without being handed over.
+     */
+    void readAll() throws IOException, InterruptedException {
+        while (!currentThread().isInterrupted() && parser.nextToken() != null && budget.take(1) > 0) {
+            records.add(decoder.decodeRecord(parser).orElse(null));
+            ends[records.size() - 1] = parser.getCurrentLocation().getByteOffset();
+            if (records.size() == ends.length) handOver();
+        }
+        handOver();
+    }
+
+    private void handOver() throws InterruptedException {
+        if (records.isEmpty()) return;
+        sink.put(LineBatch.ofDecoded(records, start, ends));
+        start = ends[records.size() - 1];
+        records = new ArrayList<>();
+        ends = new long[sizer.targetLines()];
+    }
+
+    /** The source as read by the parser, which hands the decoded records over before a read which could block. */
+    private final class HandingOverInput extends InputStream {
+        @Override
+        public int read() throws IOException {
+            beforeRead();
+            return source.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            beforeRead();
+            return source.read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return source.available();
+        }
+
+        private void beforeRead() throws IOException {
+            if (records.isEmpty() || source.available() > 0) return;
+            try {
+                handOver();
+            } catch (InterruptedException e) {
+                currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while handing over records");
+            }
+        }
+    }
+}
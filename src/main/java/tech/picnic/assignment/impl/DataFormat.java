@@ -0,0 +1,52 @@
+package tech.picnic.assignment.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import static tech.picnic.assignment.impl.Utilities.OBJECT_MAPPER;
+
+/**
+ * The encodings in which pick events are read and pickers are written. Whatever the format, the
+ * logical structure of the events and the written pickers is the same.
+ */
+public enum DataFormat {
+
+    /** One JSON document per line. */
+    JSON(OBJECT_MAPPER.getFactory()),
+
+    /** A sequence of Smile values following a single Smile header. */
+    SMILE(new SmileFactory()),
+
+    /** A sequence of CBOR data items. */
+    CBOR(new CBORFactory());
+
+    /** The longest header that {@link #detect} inspects. */
+    static final int HEADER_LENGTH = 3;
+
+    private final JsonFactory factory;
+
+    DataFormat(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    JsonFactory factory() {
+        return factory;
+    }
+
+    /** Whether documents in this format are text, separated by line breaks. */
+    boolean isText() {
+        return this == JSON;
+    }
+
+    /**
+     * Detects the format of a source from its first bytes. Smile starts with its {@code ":)\n"}
+     * header, and CBOR with a map or the self-describe tag, neither of which can start a line of
+     * UTF-8 text. Anything else is taken to be JSON.
+     */
+    static DataFormat detect(byte[] header, int length) {
+        if (length >= 3 && header[0] == ':' && header[1] == ')' && header[2] == '\n') return SMILE;
+        if (length >= 1 && ((header[0] & 0xE0) == 0xA0 || (header[0] & 0xFF) == 0xD9)) return CBOR;
+        return JSON;
+    }
+}
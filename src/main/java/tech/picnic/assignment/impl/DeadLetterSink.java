@@ -0,0 +1,132 @@
+package tech.picnic.assignment.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.lang.String.format;
+import static java.lang.Thread.currentThread;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Writes malformed lines to an output stream, so that they can be inspected rather than lost.
+ * Lines are queued without blocking the decoders, and written in batches by a thread of the sink's
+ * own. When the writer cannot keep up, further lines are dropped rather than slowing the processor
+ * down.
+ *
+ * <p>Every dead letter takes a single line: the name of its {@link Rejection}, a tab, and the raw
+ * bytes of the rejected line. Records of binary sources are not lines, so only their reason is
+ * written.
+ */
+final class DeadLetterSink implements AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 16_384;
+    private static final int MAX_BATCH_SIZE = 1_024;
+    private static final byte[] NO_LINE = new byte[0];
+    private static final DeadLetter END_OF_LETTERS = new DeadLetter(null, NO_LINE);
+    private static final DeadLetterSink DISCARDING = new DeadLetterSink(null, null);
+
+    private final BlockingQueue<DeadLetter> queue;
+    private final OutputStream out;
+    private final Thread writer;
+
+    /** A sink which writes to the given stream, and closes it when it is closed itself. */
+    DeadLetterSink(OutputStream out) {
+        this(new ArrayBlockingQueue<>(QUEUE_CAPACITY), new BufferedOutputStream(out));
+    }
+
+    private DeadLetterSink(BlockingQueue<DeadLetter> queue, OutputStream out) {
+        this.queue = queue;
+        this.out = out;
+        if (queue == null) {
+            this.writer = null;
+            return;
+        }
+        this.writer = new Thread(this::writeLetters, "picking-dead-letters");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** A sink which drops every line. */
+    static DeadLetterSink discarding() {
+        return DISCARDING;
+    }
+
+    /** Whether lines are written at all, which is worth checking before encoding one. */
+    boolean isEnabled() {
+        return queue != null;
+    }
+
+    /** Queues the line for writing. Returns {@code false} if it was dropped, as the writer fell behind. */
+    boolean offer(Rejection reason, byte[] line, int offset, int length) {
+        return queue == null || queue.offer(new DeadLetter(reason, Arrays.copyOfRange(line, offset, offset + length)));
+    }
+
+    /** Queues the reason for rejecting a record which has no line. */
+    boolean offer(Rejection reason) {
+        return queue == null || queue.offer(new DeadLetter(reason, NO_LINE));
+    }
+
+    /** Writes the lines queued so far, and closes the stream. */
+    @Override
+    public void close() {
+        if (queue == null) return;
+        try {
+            queue.put(END_OF_LETTERS);
+            writer.join();
+            out.close();
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println(format("Thread[%s]: Could not close the dead letters: %s", currentThread().getName(), e));
+        }
+    }
+
+    private void writeLetters() {
+        final var batch = new ArrayList<DeadLetter>(MAX_BATCH_SIZE);
+        var failed = false;
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                final var ended = batch.remove(END_OF_LETTERS);
+                if (!failed) failed = !write(batch);
+                batch.clear();
+                if (ended) return;
+            }
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+        }
+    }
+
+    /** Returns {@code false} if writing failed, after which all further lines are dropped. */
+    private boolean write(Iterable<DeadLetter> batch) {
+        try {
+            for (final var letter : batch) {
+                out.write(letter.reason.name().getBytes(US_ASCII));
+                out.write('\t');
+                out.write(letter.line);
+                out.write('\n');
+            }
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            System.err.println(format("Thread[%s]: Could not write the dead letters, dropping all further ones: %s", currentThread().getName(), e));
+            return false;
+        }
+    }
+
+    private static final class DeadLetter {
+        private final Rejection reason;
+        private final byte[] line;
+
+        private DeadLetter(Rejection reason, byte[] line) {
+            this.reason = reason;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package tech.picnic.assignment.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.min;
+
+/**
+ * The events which the producers of a session may still hand over, shared by all of them, so that
+ * a session which reads a single window does not read, let alone decode, events beyond {@code
+ * maxEvents}. Events are only taken once they have been read, so a producer waiting for its source
+ * never holds on to events which another one could read.
+ */
+final class EventBudget {
+
+    private final AtomicLong remaining;
+
+    EventBudget(long events) {
+        this.remaining = new AtomicLong(events);
+    }
+
+    /** A budget for a session which reads window after window, and hence uses every event. */
+    static EventBudget unlimited() {
+        return new EventBudget(Long.MAX_VALUE);
+    }
+
+    /** The number of events which can still be taken, although another producer may take them first. */
+    long remaining() {
+        return remaining.get();
+    }
+
+    /** Takes up to the given number of events, returning the number taken, which is 0 once the budget is used up. */
+    int take(int events) {
+        while (true) {
+            final var current = remaining.get();
+            final var taken = (int) min(events, current);
+            if (taken == 0 || remaining.compareAndSet(current, current - taken)) return taken;
+        }
+    }
+}
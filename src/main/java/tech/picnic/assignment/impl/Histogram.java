@@ -0,0 +1,33 @@
+package tech.picnic.assignment.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts recorded values in power-of-two buckets, which is cheap enough to record into for every
+ * batch. Bucket {@code b} holds the values in {@code [2^(b-1), 2^b)}; bucket 0 holds zero.
+ */
+final class Histogram {
+
+    static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long value) {
+        final var clamped = Math.max(0, value);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(clamped));
+        sum.add(clamped);
+        max.accumulate(clamped);
+    }
+
+    HistogramSnapshot snapshot() {
+        final var counts = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = buckets.get(bucket);
+        }
+        return new HistogramSnapshot(counts, sum.sum(), max.get());
+    }
+}
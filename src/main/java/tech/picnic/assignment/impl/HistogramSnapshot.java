@@ -0,0 +1,73 @@
+package tech.picnic.assignment.impl;
+
+import static java.lang.String.format;
+
+/**
+ * The state of a {@link Histogram} at one point in time. Percentiles are estimated as the upper
+ * bound of the bucket they fall in, so they are exact up to a factor of two.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] buckets;
+    private final long sum;
+    private final long max;
+    private final long count;
+
+    HistogramSnapshot(long[] buckets, long sum, long max) {
+        this.buckets = buckets;
+        this.sum = sum;
+        this.max = max;
+        var count = 0L;
+        for (final var bucket : buckets) count += bucket;
+        this.count = count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /** The largest value ever recorded, also when this snapshot covers only part of the histogram's lifetime. */
+    public long getMax() {
+        return max;
+    }
+
+    public long getP50() {
+        return percentile(0.5);
+    }
+
+    public long getP99() {
+        return percentile(0.99);
+    }
+
+    /** Returns what was recorded after the given, earlier snapshot of the same histogram. */
+    HistogramSnapshot minus(HistogramSnapshot earlier) {
+        final var difference = new long[buckets.length];
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            difference[bucket] = buckets[bucket] - earlier.buckets[bucket];
+        }
+        return new HistogramSnapshot(difference, sum - earlier.sum, max);
+    }
+
+    private long percentile(double quantile) {
+        final var rank = (long) Math.ceil(quantile * count);
+        var seen = 0L;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank && seen > 0) return bucket == 0 ? 0 : Math.min(max, (1L << bucket) - 1);
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return format("count=%d total=%d mean=%d p50=%d p99=%d max=%d", count, sum, getMean(), getP50(), getP99(), max);
+    }
+}
@@ -0,0 +1,99 @@
+package tech.picnic.assignment.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A bounded cache of canonical instances which evicts the least recently used entry once it is
+ * full. Safe for use by multiple threads.
+ *
+ * <p>The entries are spread by key over stripes, each locked on its own, so that parse workers
+ * interning different keys rarely wait for each other. Every stripe evicts its own least recently
+ * used entry, so a large cache evicts approximately, rather than exactly, in that order. A small
+ * cache has a single stripe.
+ */
+final class InterningCache<K, V> {
+
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_STRIPE_CAPACITY = 64;
+
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    InterningCache(int capacity) {
+        final var stripeCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, capacity / MIN_STRIPE_CAPACITY)));
+        this.stripes = (Stripe[]) new InterningCache.Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(capacity / stripeCount + (i < capacity % stripeCount ? 1 : 0));
+        }
+    }
+
+    V intern(K key, Function<? super K, ? extends V> factory) {
+        return intern(key, value -> true, factory);
+    }
+
+    /**
+     * Returns the cached instance for the given key if it is still current, or else creates, caches
+     * and returns a new one.
+     */
+    V intern(K key, Predicate<? super V> isCurrent, Function<? super K, ? extends V> factory) {
+        final var hash = Objects.hashCode(key);
+        final var stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        synchronized (stripe) {
+            final var cached = stripe.entries.get(key);
+            if (cached != null && isCurrent.test(cached)) {
+                hits.increment();
+                return cached;
+            }
+
+            misses.increment();
+            final V created = factory.apply(key);
+            stripe.entries.put(key, created);
+            return created;
+        }
+    }
+
+    int size() {
+        var size = 0;
+        for (final var stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    private final class Stripe {
+        private final Map<K, V> entries;
+
+        private Stripe(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    if (size() <= capacity) return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+    }
+}
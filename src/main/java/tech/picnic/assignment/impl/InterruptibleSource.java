@@ -0,0 +1,111 @@
+package tech.picnic.assignment.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static java.lang.Math.min;
+import static java.lang.Thread.currentThread;
+
+/**
+ * Reads a source so that the reading thread can be interrupted, even if the source itself ignores
+ * interrupts, as standard input and pipes do. Bytes which are available are read directly. A read
+ * which could block is instead performed by a thread of the given executor, and awaited
+ * interruptibly; once interrupted, that read is left pending, and its bytes are returned by the
+ * next read of this stream, if any. A pending read holds on to its thread until the source returns,
+ * so the executor should be bounded, or use virtual threads; a read it rejects fails.
+ *
+ * <p>The source is not closed, as it is owned by the caller of {@code StreamProcessor#process}.
+ */
+final class InterruptibleSource extends InputStream {
+
+    /** The most bytes a read which could block reads at once, so that its buffer stays small. */
+    private static final int MAX_BLOCKING_READ = 8 * 1024;
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final InputStream source;
+    private final ExecutorService blocking;
+    private Future<byte[]> pending;
+    private byte[] leftover = NO_BYTES;
+    private int leftoverOffset;
+
+    InterruptibleSource(InputStream source, ExecutorService blocking) {
+        this.source = source;
+        this.blocking = blocking;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final var single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) return 0;
+
+        if (leftoverOffset == leftover.length) {
+            if (pending == null && source.available() > 0) return source.read(b, off, len);
+            if (pending == null) {
+                final var size = min(len, MAX_BLOCKING_READ);
+                pending = submit(() -> readBlocking(size));
+            }
+            final var bytes = awaitPending();
+            if (bytes == null) return -1;
+            leftover = bytes;
+            leftoverOffset = 0;
+        }
+
+        final var length = min(len, leftover.length - leftoverOffset);
+        System.arraycopy(leftover, leftoverOffset, b, off, length);
+        leftoverOffset += length;
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (leftoverOffset < leftover.length) return leftover.length - leftoverOffset;
+        return pending == null ? source.available() : 0;
+    }
+
+    /** Returns the bytes read, or {@code null} at the end of the source. */
+    private byte[] readBlocking(int size) throws IOException {
+        final var buffer = new byte[size];
+        int read;
+        do {
+            read = source.read(buffer, 0, size);
+        } while (read == 0);
+        return read < 0 ? null : Arrays.copyOf(buffer, read);
+    }
+
+    private Future<byte[]> submit(Callable<byte[]> read) throws IOException {
+        try {
+            return blocking.submit(read);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("No thread is left to wait for the source", e);
+        }
+    }
+
+    private byte[] awaitPending() throws IOException {
+        try {
+            final var bytes = pending.get();
+            pending = null;
+            return bytes;
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the source");
+        } catch (ExecutionException e) {
+            pending = null;
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Reading the source failed", e.getCause());
+        }
+    }
+}
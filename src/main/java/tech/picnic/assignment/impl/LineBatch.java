@@ -0,0 +1,130 @@
+package tech.picnic.assignment.impl;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Lines which are read, and then decoded, together. Keep-alive lines are never part of a batch.
+ * Records of a binary source cannot be decoded independently of each other, so they are decoded
+ * as they are read, and their batches merely hand the retained picks on.
+ */
+abstract class LineBatch {
+
+    static final LineBatch EMPTY = of(new byte[0], new int[0], new int[0], 0);
+
+    /** The lines {@code [starts[i], ends[i])} of the given UTF-8 bytes, for every {@code i < size}. */
+    static LineBatch of(byte[] bytes, int[] starts, int[] ends, int size) {
+        return new ByteLines(bytes, starts, ends, 0, size);
+    }
+
+    /**
+     * Records which were decoded already, with {@code null} for every rejected record. Record
+     * {@code i} ended at source offset {@code ends[i]}, and the first one started at {@code start}.
+     */
+    static LineBatch ofDecoded(List<PickEvent> records, long start, long[] ends) {
+        return new DecodedRecords(records, start, ends, 0, records.size());
+    }
+
+    /** The number of lines, or records. */
+    abstract int size();
+
+    /** Returns the first {@code lines} lines of this batch. */
+    abstract LineBatch first(int lines);
+
+    /** Returns the lines of this batch after the first {@code lines} lines. */
+    abstract LineBatch skip(int lines);
+
+    /** The number of bytes the lines, or records, took in the source, not counting line separators. */
+    abstract long byteSize();
+
+    /** Decodes every line, handing the retained picks to the consumer. */
+    abstract void decode(PickDecoder decoder, Consumer<PickEvent> picks);
+
+    private static final class ByteLines extends LineBatch {
+        private final byte[] bytes;
+        private final int[] starts;
+        private final int[] ends;
+        private final int from;
+        private final int size;
+
+        private ByteLines(byte[] bytes, int[] starts, int[] ends, int from, int size) {
+            this.bytes = bytes;
+            this.starts = starts;
+            this.ends = ends;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        LineBatch first(int lines) {
+            return new ByteLines(bytes, starts, ends, from, lines);
+        }
+
+        @Override
+        LineBatch skip(int lines) {
+            return new ByteLines(bytes, starts, ends, from + lines, size - lines);
+        }
+
+        @Override
+        long byteSize() {
+            long bytes = 0;
+            for (int i = from; i < from + size; i++) bytes += ends[i] - starts[i];
+            return bytes;
+        }
+
+        @Override
+        void decode(PickDecoder decoder, Consumer<PickEvent> picks) {
+            for (int i = from; i < from + size; i++) {
+                decoder.decode(bytes, starts[i], ends[i] - starts[i]).ifPresent(picks);
+            }
+        }
+    }
+
+    private static final class DecodedRecords extends LineBatch {
+        private final List<PickEvent> records;
+        private final long start;
+        private final long[] ends;
+        private final int from;
+        private final int size;
+
+        private DecodedRecords(List<PickEvent> records, long start, long[] ends, int from, int size) {
+            this.records = records;
+            this.start = start;
+            this.ends = ends;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        LineBatch first(int lines) {
+            return new DecodedRecords(records, start, ends, from, lines);
+        }
+
+        @Override
+        LineBatch skip(int lines) {
+            return new DecodedRecords(records, start, ends, from + lines, size - lines);
+        }
+
+        @Override
+        long byteSize() {
+            if (size == 0) return 0;
+            return ends[from + size - 1] - (from == 0 ? start : ends[from - 1]);
+        }
+
+        @Override
+        void decode(PickDecoder decoder, Consumer<PickEvent> picks) {
+            records.subList(from, from + size).stream().filter(Objects::nonNull).forEach(picks);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package tech.picnic.assignment.impl;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+/**
+ * Reads the lines of a regular file by memory-mapping it, splitting lines on the raw bytes. Like
+ * {@link java.io.BufferedReader#readLine()}, a line ends at a line feed, a carriage return or both.
+ * The file is mapped in segments from the channel's position onwards, and that position is moved
+ * past the consumed lines when done, so a caller can keep reading where these lines stopped.
+ */
+final class MappedLines {
+
+    private static final long SEGMENT_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+    private final long end;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long position;
+
+    private MappedLines(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.position = channel.position();
+        this.end = channel.size();
+    }
+
+    /**
+     * Returns the lines of the source if it is a regular file, or {@code null} if it has to be read
+     * as a stream. Standard input only qualifies if nothing was buffered from it yet.
+     */
+    static MappedLines of(InputStream source) {
+        try {
+            if (source instanceof FileInputStream) {
+                final var channel = ((FileInputStream) source).getChannel();
+                return remaining(channel) > 0 ? new MappedLines(channel) : null;
+            }
+            if (source == System.in) {
+                // the channel is deliberately not closed, which would close standard input itself
+                final var channel = new FileInputStream(FileDescriptor.in).getChannel();
+                final var remaining = remaining(channel);
+                return remaining > 0 && source.available() == remaining ? new MappedLines(channel) : null;
+            }
+        } catch (IOException e) {
+            // pipes, sockets and terminals cannot be mapped
+        }
+        return null;
+    }
+
+    private static long remaining(FileChannel channel) throws IOException {
+        return channel.size() - channel.position();
+    }
+
+    /** Detects the format of the file from its bytes at the current position. */
+    DataFormat detectFormat() throws IOException {
+        final var header = new byte[(int) min(DataFormat.HEADER_LENGTH, end - position)];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = byteAt(position + i, position);
+        }
+        return DataFormat.detect(header, header.length);
+    }
+
+    boolean hasRemaining() {
+        return position < end;
+    }
+
+    /**
+     * Copies up to {@code maxLines} non-empty lines into a new batch. Returns an empty batch only
+     * once the file has been read completely.
+     */
+    LineBatch nextBatch(int maxLines) throws IOException {
+        final var starts = new int[maxLines];
+        final var ends = new int[maxLines];
+        var lines = 0;
+
+        skipLineBreaks();
+        final var batchStart = position;
+        var lineStart = position;
+        while (lines < maxLines && position < end) {
+            if (position - batchStart == SEGMENT_SIZE) {
+                if (lines == 0) throw new IOException(format("The line at offset [%d] is longer than [%d] bytes", batchStart, SEGMENT_SIZE));
+                position = lineStart;
+                break;
+            }
+
+            final var b = byteAt(position, batchStart);
+            if (b == '\n' || b == '\r') {
+                if (position > lineStart) {
+                    starts[lines] = (int) (lineStart - batchStart);
+                    ends[lines] = (int) (position - batchStart);
+                    lines++;
+                }
+                lineStart = ++position;
+            } else {
+                position++;
+            }
+        }
+        if (position > lineStart) {
+            // the last line of the file has no line break
+            starts[lines] = (int) (lineStart - batchStart);
+            ends[lines] = (int) (position - batchStart);
+            lines++;
+        }
+
+        final var bytes = new byte[lines == 0 ? 0 : ends[lines - 1]];
+        if (lines > 0) {
+            segment.position((int) (batchStart - segmentStart));
+            segment.get(bytes);
+        }
+        channel.position(position);
+        return LineBatch.of(bytes, starts, ends, lines);
+    }
+
+    private void skipLineBreaks() throws IOException {
+        while (position < end) {
+            final var b = byteAt(position, position);
+            if (b != '\n' && b != '\r') return;
+            position++;
+        }
+        channel.position(position);
+    }
+
+    /** Returns the byte at the given offset, mapping a new segment from {@code keepFrom} if needed. */
+    private byte byteAt(long offset, long keepFrom) throws IOException {
+        if (segment == null || offset >= segmentStart + segment.limit()) {
+            segmentStart = keepFrom;
+            segment = channel.map(READ_ONLY, segmentStart, min(SEGMENT_SIZE, end - segmentStart));
+        }
+        return segment.get((int) (offset - segmentStart));
+    }
+}
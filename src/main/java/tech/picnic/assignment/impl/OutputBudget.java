@@ -0,0 +1,52 @@
+package tech.picnic.assignment.impl;
+
+import static java.lang.Math.max;
+
+/**
+ * Estimates how long sorting and writing the retained picks of a window takes, so that reading can
+ * stop early enough for the whole window to finish within {@code maxTime}. The estimate assumes a
+ * fixed overhead plus a cost per retained pick, which is learned from the windows written so far.
+ */
+final class OutputBudget {
+
+    /** The cost per pick assumed until a window has been written, which errs on the expensive side. */
+    private static final double INITIAL_NANOS_PER_PICK = 2_000;
+    private static final long OVERHEAD_NANOS = 1_000_000;
+    private static final double SAFETY_FACTOR = 1.5;
+    private static final double SMOOTHING = 0.25;
+
+    private final boolean reserving;
+    private volatile double nanosPerPick = INITIAL_NANOS_PER_PICK;
+    private boolean observed;
+
+    private OutputBudget(boolean reserving) {
+        this.reserving = reserving;
+    }
+
+    /** A budget which reserves time for the output, based on the cost observed so far. */
+    static OutputBudget adaptive() {
+        return new OutputBudget(true);
+    }
+
+    /** A budget which reserves no time at all, leaving all of {@code maxTime} to reading. */
+    static OutputBudget unreserved() {
+        return new OutputBudget(false);
+    }
+
+    /** The time to reserve for sorting and writing the given number of picks, in nanoseconds. */
+    long reserve(long picks) {
+        return reserving ? (long) (SAFETY_FACTOR * (OVERHEAD_NANOS + nanosPerPick * picks)) : 0;
+    }
+
+    /** Learns from the time it took to sort and write a window of the given number of picks. */
+    synchronized void record(long picks, long nanos) {
+        if (picks == 0) return;
+        final var sample = (double) max(0, nanos - OVERHEAD_NANOS) / picks;
+        nanosPerPick = observed ? nanosPerPick + SMOOTHING * (sample - nanosPerPick) : sample;
+        observed = true;
+    }
+
+    double nanosPerPick() {
+        return nanosPerPick;
+    }
+}
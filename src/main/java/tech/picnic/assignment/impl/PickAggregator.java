@@ -0,0 +1,387 @@
+package tech.picnic.assignment.impl;
+
+import tech.picnic.assignment.model.Picker;
+import tech.picnic.assignment.model.TemperatureZone;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Comparator.comparingLong;
+
+/**
+ * Groups picks by picker while they are being read. Retained picks are stored in {@link
+ * PickColumns}, with pickers and upper-cased article names kept once in dictionaries, so the
+ * original events can be discarded as soon as they are accepted.
+ *
+ * <p>Once the retained picks exceed the memory budget, they are sorted and spilled to disk as a
+ * run, after which the columns are reused. The sorted pickers then stream a merge of all runs.
+ */
+class PickAggregator implements Aggregation {
+
+    static final Comparator<PickerPicks> PICKER_ORDER = comparingLong(PickerPicks::activeSince).thenComparing(picks -> picks.picker.getId());
+
+    /** The memory taken by a retained pick: its columns, plus its row index and scratch space while sorting. */
+    static final int BYTES_PER_PICK = 24;
+
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private final PickFilter filter;
+    private final PickInterner interner;
+    private final PickColumns columns;
+    private final int maxPicksInMemory;
+    private final SpilledRuns spilledRuns = new SpilledRuns();
+    private final Map<String, PickerPicks> pickersById = new HashMap<>();
+    private final List<PickerPicks> pickers = new ArrayList<>();
+    private final Map<String, Integer> articleIndices = new HashMap<>();
+    private final List<String> articleNames = new ArrayList<>();
+    private int size;
+
+    PickAggregator(TemperatureZone requiredTemperatureZone, PickInterner interner) {
+        this(ProcessorConfig.builder().pickFilter(PickFilter.of(requiredTemperatureZone)).build(), interner, PickColumns.onHeap());
+    }
+
+    /**
+     * Creates an aggregator which retains the picks selected by the config's {@link PickFilter}, and
+     * spills them to disk once they take more than its share of the config's memory budget.
+     */
+    PickAggregator(ProcessorConfig config, PickInterner interner, PickColumns columns) {
+        this.filter = config.getPickFilter();
+        this.interner = interner;
+        this.columns = columns;
+        final var memoryBudget = config.getMemoryBudget() / config.getAggregationShards();
+        this.maxPicksInMemory = (int) max(1, min(Integer.MAX_VALUE, memoryBudget / BYTES_PER_PICK));
+    }
+
+    @Override
+    public void accept(PickEvent pick) {
+        if (filter.test(pick)) acceptRetained(pick.getPicker(), pick.getTimestamp(), interner.upperCasedName(pick.getArticle()));
+    }
+
+    @Override
+    public void acceptRetained(Picker picker, long timestamp, String articleName) {
+        final var picks = pickersById.computeIfAbsent(picker.getId(), id -> newPicker(picker));
+        picks.size++;
+        picks.inMemory++;
+        size++;
+        columns.append(timestamp, picks.index, articleIndex(articleName));
+
+        if (columns.size() >= maxPicksInMemory) spill();
+    }
+
+    /** Reads the spilled runs first, which hold the earliest picks of every picker, followed by the picks still in memory. */
+    @Override
+    public void forEachRetained(RetainedPickConsumer picks) {
+        try {
+            for (int run = 0; run < spilledRuns.size(); run++) {
+                final var cursor = spilledRuns.open(run);
+                while (cursor.next()) {
+                    picks.accept(pickers.get(cursor.picker()).picker, cursor.timestamp(), articleNames.get(cursor.article()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read picks back from disk", e);
+        }
+        for (int row = 0; row < columns.size(); row++) {
+            picks.accept(pickers.get(columns.picker(row)).picker, columns.timestamp(row), articleNames.get(columns.article(row)));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The picks of all pickers are read through one cursor, so they have to be read picker by
+     * picker, in the returned order.
+     */
+    @Override
+    public List<PickerPicks> sortedPickers() {
+        final var sorted = sortedPickerList();
+        final var rows = sortedRows(sorted, false);
+
+        final PickCursor picks;
+        if (spilledRuns.size() == 0) {
+            picks = new RowCursor(rows);
+        } else {
+            final var ranks = new int[pickers.size()];
+            for (int rank = 0; rank < sorted.size(); rank++) {
+                ranks[sorted.get(rank).index] = rank;
+            }
+            picks = new MergedCursor(openRuns(rows), ranks);
+        }
+
+        sorted.forEach(picker -> picker.startReading(picks));
+        return sorted;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void reset() {
+        size = 0;
+        columns.clear();
+        spilledRuns.close();
+        pickersById.clear();
+        pickers.clear();
+        // no pick refers to the articles anymore, so the dictionary would otherwise only grow from window to window
+        articleIndices.clear();
+        articleNames.clear();
+    }
+
+    /** The number of distinct upper-cased article names in the dictionary. */
+    int articleCount() {
+        return articleNames.size();
+    }
+
+    /** Deletes the runs that were spilled to disk. */
+    @Override
+    public void close() {
+        spilledRuns.close();
+    }
+
+    private PickerPicks newPicker(Picker picker) {
+        final var picks = new PickerPicks(picker, pickers.size());
+        pickers.add(picks);
+        return picks;
+    }
+
+    private int articleIndex(String articleName) {
+        return articleIndices.computeIfAbsent(articleName, name -> {
+            articleNames.add(name);
+            return articleNames.size() - 1;
+        });
+    }
+
+    private void spill() {
+        final var rows = sortedRows(sortedPickerList(), true);
+        try {
+            spilledRuns.write(columns, rows, rows.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill picks to disk", e);
+        }
+        columns.clear();
+        pickers.forEach(picker -> picker.inMemory = 0);
+    }
+
+    private List<PickerPicks> sortedPickerList() {
+        final var sorted = new ArrayList<>(pickers);
+        sorted.sort(PICKER_ORDER);
+        return sorted;
+    }
+
+    /** Returns the rows in memory, ordered by picker as given and then chronologically. */
+    private int[] sortedRows(List<PickerPicks> sorted, boolean spill) {
+        final var event = new ProcessorEvents.SortPicks();
+        event.begin();
+        // bucket the rows by picker, keeping their arrival order, then sort every bucket on its own
+        final var next = new int[pickers.size()];
+        var offset = 0;
+        for (final var picker : sorted) {
+            next[picker.index] = offset;
+            offset += picker.inMemory;
+        }
+
+        final var rows = new int[columns.size()];
+        for (int row = 0; row < rows.length; row++) {
+            rows[next[columns.picker(row)]++] = row;
+        }
+
+        final var scratch = new int[rows.length];
+        offset = 0;
+        for (final var picker : sorted) {
+            sortByTimestamp(rows, offset, offset + picker.inMemory, scratch);
+            offset += picker.inMemory;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.pickers = sorted.size();
+            event.picks = rows.length;
+            event.spill = spill;
+            event.commit();
+        }
+        return rows;
+    }
+
+    /** Opens the spilled runs in the order they were written, followed by the rows still in memory. */
+    private List<PickCursor> openRuns(int[] rows) {
+        final var runs = new ArrayList<PickCursor>(spilledRuns.size() + 1);
+        try {
+            for (int run = 0; run < spilledRuns.size(); run++) {
+                runs.add(spilledRuns.open(run));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read picks back from disk", e);
+        }
+        runs.add(new RowCursor(rows));
+        return runs;
+    }
+
+    /** A stable merge sort, as picks with equal timestamps keep their arrival order. */
+    private void sortByTimestamp(int[] rows, int from, int to, int[] scratch) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                final var row = rows[i];
+                final var timestamp = columns.timestamp(row);
+                var j = i - 1;
+                for (; j >= from && columns.timestamp(rows[j]) > timestamp; j--) {
+                    rows[j + 1] = rows[j];
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+
+        final var mid = (from + to) >>> 1;
+        sortByTimestamp(rows, from, mid, scratch);
+        sortByTimestamp(rows, mid, to, scratch);
+        if (columns.timestamp(rows[mid - 1]) <= columns.timestamp(rows[mid])) return;
+
+        System.arraycopy(rows, from, scratch, from, mid - from);
+        int left = from, right = mid, target = from;
+        while (left < mid && right < to) {
+            rows[target++] = columns.timestamp(rows[right]) < columns.timestamp(scratch[left]) ? rows[right++] : scratch[left++];
+        }
+        System.arraycopy(scratch, left, rows, target, mid - left);
+    }
+
+    private final class RowCursor implements PickCursor {
+        private final int[] rows;
+        private int position = -1;
+
+        private RowCursor(int[] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean next() {
+            return ++position < rows.length;
+        }
+
+        @Override
+        public int picker() {
+            return columns.picker(rows[position]);
+        }
+
+        @Override
+        public long timestamp() {
+            return columns.timestamp(rows[position]);
+        }
+
+        @Override
+        public int article() {
+            return columns.article(rows[position]);
+        }
+    }
+
+    /**
+     * Merges runs which are each ordered by picker rank and timestamp. Equal picks are taken from the
+     * earliest run, so picks with equal timestamps keep their arrival order.
+     */
+    private static final class MergedCursor implements PickCursor {
+        private final PriorityQueue<Run> runs;
+        private Run current;
+
+        private MergedCursor(List<PickCursor> cursors, int[] ranks) {
+            this.runs = new PriorityQueue<>(cursors.size(), Comparator.<Run>comparingInt(run -> ranks[run.cursor.picker()])
+                    .thenComparingLong(run -> run.cursor.timestamp())
+                    .thenComparingInt(run -> run.order));
+            for (int order = 0; order < cursors.size(); order++) {
+                final var cursor = cursors.get(order);
+                if (cursor.next()) runs.add(new Run(cursor, order));
+            }
+        }
+
+        @Override
+        public boolean next() {
+            if (current != null && current.cursor.next()) runs.add(current);
+            current = runs.poll();
+            return current != null;
+        }
+
+        @Override
+        public int picker() {
+            return current.cursor.picker();
+        }
+
+        @Override
+        public long timestamp() {
+            return current.cursor.timestamp();
+        }
+
+        @Override
+        public int article() {
+            return current.cursor.article();
+        }
+
+        private static final class Run {
+            private final PickCursor cursor;
+            private final int order;
+
+            private Run(PickCursor cursor, int order) {
+                this.cursor = cursor;
+                this.order = order;
+            }
+        }
+    }
+
+    final class PickerPicks {
+        private final Picker picker;
+        private final int index;
+        private final long activeSince;
+        private int size;
+        private int inMemory;
+        private PickCursor picks;
+        private int remaining;
+
+        private PickerPicks(Picker picker, int index) {
+            this.picker = picker;
+            this.index = index;
+            this.activeSince = TimestampCodec.toEpochNanos(picker.getActiveSince());
+        }
+
+        private void startReading(PickCursor picks) {
+            this.picks = picks;
+            this.remaining = size;
+        }
+
+        Picker picker() {
+            return picker;
+        }
+
+        /** The picker's activity start, in nanoseconds since the epoch. */
+        long activeSince() {
+            return activeSince;
+        }
+
+        /** The number of retained picks. */
+        int size() {
+            return size;
+        }
+
+        /** Moves to the picker's next pick in chronological order, returning {@code false} after the last one. */
+        boolean nextPick() {
+            if (remaining == 0) return false;
+            remaining--;
+            return picks.next();
+        }
+
+        /** The upper-cased article name of the current pick. */
+        String articleName() {
+            return articleNames.get(picks.article());
+        }
+
+        /** The time of the current pick, in nanoseconds since the epoch. */
+        long timestamp() {
+            return picks.timestamp();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package tech.picnic.assignment.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retained picks stored column by column: a timestamp, a picker index and an article index per row.
+ * The indices refer to dictionaries kept by the {@link PickAggregator}. Storage grows in fixed-size
+ * chunks, so appending never copies rows which are already stored.
+ */
+abstract class PickColumns {
+
+    static final int CHUNK_SHIFT = 14;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private int size;
+
+    /** Columns backed by primitive arrays on the heap. */
+    static PickColumns onHeap() {
+        return new HeapColumns();
+    }
+
+    /** Columns backed by direct byte buffers, which keeps large batches out of the heap. */
+    static PickColumns offHeap() {
+        return new DirectColumns();
+    }
+
+    final void append(long timestamp, int picker, int article) {
+        final var chunk = size >>> CHUNK_SHIFT;
+        if (chunk == chunks()) addChunk();
+        set(chunk, size & CHUNK_MASK, timestamp, picker, article);
+        size++;
+    }
+
+    final int size() {
+        return size;
+    }
+
+    /** Drops all rows, keeping the chunks that were allocated for reuse. */
+    final void clear() {
+        size = 0;
+    }
+
+    final long timestamp(int row) {
+        return timestamp(row >>> CHUNK_SHIFT, row & CHUNK_MASK);
+    }
+
+    final int picker(int row) {
+        return picker(row >>> CHUNK_SHIFT, row & CHUNK_MASK);
+    }
+
+    final int article(int row) {
+        return article(row >>> CHUNK_SHIFT, row & CHUNK_MASK);
+    }
+
+    abstract int chunks();
+
+    abstract void addChunk();
+
+    abstract void set(int chunk, int offset, long timestamp, int picker, int article);
+
+    abstract long timestamp(int chunk, int offset);
+
+    abstract int picker(int chunk, int offset);
+
+    abstract int article(int chunk, int offset);
+
+    private static final class HeapColumns extends PickColumns {
+        private final List<long[]> timestamps = new ArrayList<>();
+        private final List<int[]> pickers = new ArrayList<>();
+        private final List<int[]> articles = new ArrayList<>();
+
+        @Override
+        int chunks() {
+            return timestamps.size();
+        }
+
+        @Override
+        void addChunk() {
+            timestamps.add(new long[CHUNK_SIZE]);
+            pickers.add(new int[CHUNK_SIZE]);
+            articles.add(new int[CHUNK_SIZE]);
+        }
+
+        @Override
+        void set(int chunk, int offset, long timestamp, int picker, int article) {
+            timestamps.get(chunk)[offset] = timestamp;
+            pickers.get(chunk)[offset] = picker;
+            articles.get(chunk)[offset] = article;
+        }
+
+        @Override
+        long timestamp(int chunk, int offset) {
+            return timestamps.get(chunk)[offset];
+        }
+
+        @Override
+        int picker(int chunk, int offset) {
+            return pickers.get(chunk)[offset];
+        }
+
+        @Override
+        int article(int chunk, int offset) {
+            return articles.get(chunk)[offset];
+        }
+    }
+
+    /** Lays out every chunk as one buffer holding the timestamp column followed by the two index columns. */
+    private static final class DirectColumns extends PickColumns {
+        private static final int PICKERS = CHUNK_SIZE * Long.BYTES;
+        private static final int ARTICLES = PICKERS + CHUNK_SIZE * Integer.BYTES;
+        private static final int CHUNK_BYTES = ARTICLES + CHUNK_SIZE * Integer.BYTES;
+
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+
+        @Override
+        int chunks() {
+            return chunks.size();
+        }
+
+        @Override
+        void addChunk() {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.nativeOrder()));
+        }
+
+        @Override
+        void set(int chunk, int offset, long timestamp, int picker, int article) {
+            final var buffer = chunks.get(chunk);
+            buffer.putLong(offset * Long.BYTES, timestamp);
+            buffer.putInt(PICKERS + offset * Integer.BYTES, picker);
+            buffer.putInt(ARTICLES + offset * Integer.BYTES, article);
+        }
+
+        @Override
+        long timestamp(int chunk, int offset) {
+            return chunks.get(chunk).getLong(offset * Long.BYTES);
+        }
+
+        @Override
+        int picker(int chunk, int offset) {
+            return chunks.get(chunk).getInt(PICKERS + offset * Integer.BYTES);
+        }
+
+        @Override
+        int article(int chunk, int offset) {
+            return chunks.get(chunk).getInt(ARTICLES + offset * Integer.BYTES);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package tech.picnic.assignment.impl;
+
+/**
+ * Iterates over retained picks, referring to pickers and article names by their dictionary index in
+ * the {@link PickAggregator}.
+ */
+interface PickCursor {
+
+    /** Moves to the next pick, returning {@code false} once there are no picks left. */
+    boolean next();
+
+    int picker();
+
+    long timestamp();
+
+    int article();
+}
@@ -0,0 +1,304 @@
+package tech.picnic.assignment.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import tech.picnic.assignment.model.PickRequest;
+import tech.picnic.assignment.model.TemperatureZone;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.util.Optional;
+
+import static com.fasterxml.jackson.core.JsonToken.END_OBJECT;
+import static com.fasterxml.jackson.core.JsonToken.START_OBJECT;
+import static com.fasterxml.jackson.core.JsonToken.VALUE_NULL;
+import static com.fasterxml.jackson.core.JsonToken.VALUE_NUMBER_FLOAT;
+import static com.fasterxml.jackson.core.JsonToken.VALUE_NUMBER_INT;
+import static com.fasterxml.jackson.core.JsonToken.VALUE_STRING;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static tech.picnic.assignment.impl.Utilities.OBJECT_MAPPER;
+
+/**
+ * Decodes pick events straight from Jackson's token stream. An event which does not pass the
+ * {@link PickFilter} is rejected as soon as its picker or its article's zone has been read, before
+ * any model object is created. Lines of raw bytes which cannot pass are rejected by a {@link
+ * PickPrefilter} before they are parsed at all.
+ *
+ * <p>Rejections are reported as a {@link Rejection} rather than thrown, so that a flood of bad input
+ * is cheap to get through. A line which is not well-formed JSON is rejected for its syntax, whatever
+ * else is wrong with it; on raw bytes, the prefilter tells so without Jackson throwing, except for
+ * lines it cannot be sure of. Malformed lines are handed to a {@link DeadLetterSink}, if one is
+ * given.
+ *
+ * <p>Accepts the same input as binding a {@link PickRequest} through {@link Utilities#OBJECT_MAPPER}
+ * does, except for events which the processor could not handle anyway, such as those without a
+ * picker.
+ */
+class PickDecoder {
+
+    private final JsonFactory jsonFactory = OBJECT_MAPPER.getFactory();
+    private final PickFilter filter;
+    private final PickPrefilter prefilter;
+    private final PickInterner interner;
+    private final ProcessorMetrics metrics;
+    private final DeadLetterSink deadLetters;
+
+    PickDecoder(TemperatureZone requiredTemperatureZone, PickInterner interner) {
+        this(ProcessorConfig.builder().pickFilter(PickFilter.of(requiredTemperatureZone)).build(), interner, new ProcessorMetrics(),
+                DeadLetterSink.discarding());
+    }
+
+    /** Creates a decoder which retains the picks selected by the config's {@link PickFilter}. */
+    PickDecoder(ProcessorConfig config, PickInterner interner, ProcessorMetrics metrics, DeadLetterSink deadLetters) {
+        this.filter = config.getPickFilter();
+        this.prefilter = new PickPrefilter(filter);
+        this.interner = interner;
+        this.metrics = metrics;
+        this.deadLetters = deadLetters;
+    }
+
+    Optional<PickEvent> decode(String line) {
+        final var pick = new RawPick();
+        final var decoded = decode(() -> jsonFactory.createParser(line), pick);
+        if (decoded.isEmpty()) {
+            final var bytes = deadLetters.isEnabled() ? line.getBytes(UTF_8) : null;
+            reject(pick.rejection, bytes, 0, bytes == null ? 0 : bytes.length);
+        }
+        return decoded;
+    }
+
+    /** Decodes the UTF-8 encoded line held in the given range of the buffer. */
+    Optional<PickEvent> decode(byte[] buffer, int offset, int length) {
+        final var verdict = prefilter.test(buffer, offset, length);
+        if (verdict != PickPrefilter.Verdict.PARSE) {
+            reject(verdict.rejection, buffer, offset, length);
+            return Optional.empty();
+        }
+        final var pick = new RawPick();
+        final var decoded = decode(() -> jsonFactory.createParser(buffer, offset, length), pick);
+        if (decoded.isEmpty()) reject(pick.rejection, buffer, offset, length);
+        return decoded;
+    }
+
+    /**
+     * Decodes the root-level value at which the parser of a binary stream is positioned. Whatever is
+     * left of a rejected value is skipped, so that the parser ends up right after it. Throws if the
+     * stream itself is broken, as binary records cannot be told apart anymore after that.
+     */
+    Optional<PickEvent> decodeRecord(JsonParser parser) throws IOException {
+        final var pick = new RawPick();
+        Optional<PickEvent> decoded;
+        try {
+            decoded = decode(parser, pick);
+        } catch (JsonProcessingException e) {
+            decoded = pick.reject(Rejection.SYNTAX);
+        } catch (DateTimeException e) {
+            decoded = pick.reject(Rejection.INVALID_TIMESTAMP);
+        }
+        while (!parser.getParsingContext().inRoot()) {
+            if (parser.nextToken() == null) throw new EOFException("The stream ended within a record");
+        }
+        if (decoded.isEmpty()) reject(pick.rejection, null, 0, 0);
+        return decoded;
+    }
+
+    private Optional<PickEvent> decode(ParserSource line, RawPick pick) {
+        try (final var parser = line.open()) {
+            Optional<PickEvent> decoded;
+            try {
+                parser.nextToken();
+                decoded = decode(parser, pick);
+            } catch (DateTimeException e) {
+                decoded = pick.reject(Rejection.INVALID_TIMESTAMP);
+            }
+            if (decoded.isEmpty()) finishRootValue(parser);
+            return decoded;
+        } catch (IOException e) {
+            // a syntax error takes precedence over any reason found before it
+            pick.rejection = Rejection.SYNTAX;
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reads the rest of the root value of a rejected line, so that a line which is not well-formed
+     * is rejected for its syntax, whatever the decoder found wrong with it before. The prefilter can
+     * then tell syntax errors on the raw bytes, where it would otherwise have to know how far the
+     * decoder reads. Anything after the root value is ignored, as for a retained pick.
+     */
+    private static void finishRootValue(JsonParser parser) throws IOException {
+        parser.finishToken();
+        while (!parser.getParsingContext().inRoot()) {
+            if (parser.nextToken() == null) throw new EOFException("The line ended within its root value");
+        }
+    }
+
+    /** Counts the rejection, and hands a malformed line, or the reason alone if there is no line, to the dead letters. */
+    private void reject(Rejection reason, byte[] line, int offset, int length) {
+        if (reason == Rejection.FILTERED) {
+            metrics.recordFilteredPick();
+            return;
+        }
+        metrics.recordMalformedLine(reason);
+        final var queued = line != null ? deadLetters.offer(reason, line, offset, length) : deadLetters.offer(reason);
+        if (!queued) metrics.recordDroppedDeadLetter();
+    }
+
+    /** Decodes the value at which the parser is positioned. */
+    private Optional<PickEvent> decode(JsonParser parser, RawPick pick) throws IOException {
+        if (parser.currentToken() != START_OBJECT) return pick.reject(Rejection.NOT_AN_OBJECT);
+
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            switch (field) {
+                case "id":
+                    scalar(parser, pick);
+                    break;
+                case "timestamp":
+                    pick.timestamp = scalar(parser, pick);
+                    break;
+                case "quantity":
+                    if (!isQuantity(parser)) pick.reject(Rejection.INVALID_VALUE);
+                    break;
+                case "picker":
+                    readPicker(parser, pick);
+                    if (pick.pickerId != null && pick.rejection == null && !filter.acceptsPicker(pick.pickerId)) {
+                        pick.reject(Rejection.FILTERED);
+                    }
+                    break;
+                case "article":
+                    readArticle(parser, pick);
+                    break;
+                default:
+                    pick.reject(Rejection.UNKNOWN_FIELD);
+            }
+            if (pick.rejection != null) return Optional.empty();
+        }
+
+        if (parser.currentToken() != END_OBJECT) return pick.reject(Rejection.SYNTAX);
+        return pick.isComplete() ? Optional.of(toPickEvent(pick)) : pick.reject(Rejection.INCOMPLETE);
+    }
+
+    private static void readPicker(JsonParser parser, RawPick pick) throws IOException {
+        if (parser.nextToken() != START_OBJECT) {
+            pick.reject(Rejection.INVALID_VALUE);
+            return;
+        }
+
+        String field;
+        while (pick.rejection == null && (field = parser.nextFieldName()) != null) {
+            switch (field) {
+                case "id":
+                    pick.pickerId = scalar(parser, pick);
+                    break;
+                case "name":
+                    pick.pickerName = scalar(parser, pick);
+                    break;
+                case "active_since":
+                    pick.pickerActiveSince = scalar(parser, pick);
+                    break;
+                default:
+                    pick.reject(Rejection.UNKNOWN_FIELD);
+            }
+        }
+    }
+
+    /** Rejects the pick if the article is malformed or belongs to a temperature zone which is not retained. */
+    private void readArticle(JsonParser parser, RawPick pick) throws IOException {
+        if (parser.nextToken() != START_OBJECT) {
+            pick.reject(Rejection.INVALID_VALUE);
+            return;
+        }
+
+        String field;
+        while (pick.rejection == null && (field = parser.nextFieldName()) != null) {
+            switch (field) {
+                case "id":
+                    pick.articleId = scalar(parser, pick);
+                    break;
+                case "name":
+                    pick.articleName = scalar(parser, pick);
+                    break;
+                case "temperature_zone":
+                    if (parser.nextToken() != VALUE_STRING) {
+                        pick.reject(Rejection.INVALID_VALUE);
+                        break;
+                    }
+                    pick.temperatureZone = filter.temperatureZone(parser.getText());
+                    if (pick.temperatureZone == null) pick.reject(Rejection.FILTERED);
+                    break;
+                default:
+                    pick.reject(Rejection.UNKNOWN_FIELD);
+            }
+        }
+        if (pick.rejection == null && pick.temperatureZone == null) pick.reject(Rejection.INCOMPLETE);
+    }
+
+    /** Returns the text of a scalar value, or rejects the pick if the value is an object or array. */
+    private static String scalar(JsonParser parser, RawPick pick) throws IOException {
+        final var token = parser.nextToken();
+        if (token == VALUE_NULL) return null;
+        if (!token.isScalarValue()) {
+            pick.reject(Rejection.INVALID_VALUE);
+            return null;
+        }
+        return parser.getText();
+    }
+
+    private static boolean isQuantity(JsonParser parser) throws IOException {
+        final var token = parser.nextToken();
+        if (token == VALUE_NULL || token == VALUE_NUMBER_INT || token == VALUE_NUMBER_FLOAT) return true;
+        return token == VALUE_STRING && isInt(parser.getText().trim());
+    }
+
+    /** Whether {@link Integer#parseInt} accepts the text, which is told without it throwing. */
+    private static boolean isInt(String text) {
+        final var length = text.length();
+        final var negative = length > 0 && text.charAt(0) == '-';
+        var i = length > 0 && (negative || text.charAt(0) == '+') ? 1 : 0;
+        if (i == length) return false;
+        long value = 0;
+        for (; i < length; i++) {
+            final var digit = Character.digit(text.charAt(i), 10);
+            if (digit < 0) return false;
+            value = value * 10 + digit;
+            if (value > 1L + Integer.MAX_VALUE) return false;
+        }
+        return negative || value <= Integer.MAX_VALUE;
+    }
+
+    private PickEvent toPickEvent(RawPick pick) {
+        // the activity start is validated for every event, not only for pickers which are not cached yet
+        final var picker = interner.picker(pick.pickerId, pick.pickerName, TimestampCodec.parse(pick.pickerActiveSince));
+        final var article = interner.article(pick.articleId, pick.articleName, pick.temperatureZone);
+        return new PickEvent(picker, article, TimestampCodec.parse(pick.timestamp));
+    }
+
+    private interface ParserSource {
+        JsonParser open() throws IOException;
+    }
+
+    /** The raw field values of a single event, kept as text until the event is known to be retained. */
+    private static final class RawPick {
+        private String timestamp;
+        private String pickerId;
+        private String pickerName;
+        private String pickerActiveSince;
+        private String articleId;
+        private String articleName;
+        private TemperatureZone temperatureZone;
+        private Rejection rejection;
+
+        /** Records the first reason for rejecting the pick. */
+        private Optional<PickEvent> reject(Rejection reason) {
+            if (rejection == null) rejection = reason;
+            return Optional.empty();
+        }
+
+        private boolean isComplete() {
+            return timestamp != null && pickerId != null && pickerActiveSince != null && articleName != null;
+        }
+    }
+}
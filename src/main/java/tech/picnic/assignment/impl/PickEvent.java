@@ -0,0 +1,22 @@
+package tech.picnic.assignment.impl;
+
+import lombok.Value;
+import tech.picnic.assignment.model.Article;
+import tech.picnic.assignment.model.PickRequest;
+import tech.picnic.assignment.model.Picker;
+
+/**
+ * A decoded {@link PickRequest}, reduced to what the aggregation needs. The timestamp is held in
+ * nanoseconds since the epoch, see {@link TimestampCodec}.
+ */
+@Value
+class PickEvent {
+
+    private final Picker picker;
+    private final Article article;
+    private final long timestamp;
+
+    static PickEvent of(PickRequest request) {
+        return new PickEvent(request.getPicker(), request.getArticle(), TimestampCodec.toEpochNanos(request.getTimestamp()));
+    }
+}
@@ -0,0 +1,52 @@
+package tech.picnic.assignment.impl;
+
+import lombok.Builder;
+import lombok.Value;
+import tech.picnic.assignment.model.TemperatureZone;
+
+import java.util.Set;
+
+import static tech.picnic.assignment.model.TemperatureZone.Ambient;
+
+/**
+ * Selects the picks which are retained, by the temperature zone of their article and by their
+ * picker. Lines are checked against it on their raw bytes by a {@link PickPrefilter} first, and
+ * only those which may match are parsed.
+ */
+@Value
+@Builder
+public class PickFilter {
+
+    /** The temperature zones of the articles whose picks are retained. */
+    @Builder.Default
+    private final Set<TemperatureZone> temperatureZones = Set.of(Ambient);
+
+    /** The ids of the pickers whose picks are retained, or {@code null} to retain those of every picker. */
+    @Builder.Default
+    private final Set<String> allowedPickers = null;
+
+    /** The ids of the pickers whose picks are never retained, even if they are allowed. */
+    @Builder.Default
+    private final Set<String> deniedPickers = Set.of();
+
+    /** Retains the picks of every picker in the given temperature zone. */
+    static PickFilter of(TemperatureZone temperatureZone) {
+        return builder().temperatureZones(Set.of(temperatureZone)).build();
+    }
+
+    /** Returns the retained temperature zone with the given display name, or {@code null} if there is none. */
+    TemperatureZone temperatureZone(String displayName) {
+        for (final var temperatureZone : temperatureZones) {
+            if (temperatureZone.getDisplayName().equals(displayName)) return temperatureZone;
+        }
+        return null;
+    }
+
+    boolean acceptsPicker(String pickerId) {
+        return (allowedPickers == null || allowedPickers.contains(pickerId)) && !deniedPickers.contains(pickerId);
+    }
+
+    boolean test(PickEvent pick) {
+        return temperatureZones.contains(pick.getArticle().getTemperatureZone()) && acceptsPicker(pick.getPicker().getId());
+    }
+}
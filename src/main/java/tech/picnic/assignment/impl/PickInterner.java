@@ -0,0 +1,58 @@
+package tech.picnic.assignment.impl;
+
+import tech.picnic.assignment.model.Article;
+import tech.picnic.assignment.model.Picker;
+import tech.picnic.assignment.model.TemperatureZone;
+
+import java.util.Objects;
+
+/**
+ * Hands out canonical {@link Picker}s and {@link Article}s, so that the few hundred pickers and few
+ * thousand articles of a shift are not allocated again for every event.
+ */
+class PickInterner {
+
+    private final InterningCache<String, Picker> pickers;
+    private final InterningCache<String, Article> articles;
+    private final InterningCache<String, String> upperCasedNames;
+
+    PickInterner(int pickerCapacity, int articleCapacity) {
+        this.pickers = new InterningCache<>(pickerCapacity);
+        this.articles = new InterningCache<>(articleCapacity);
+        this.upperCasedNames = new InterningCache<>(articleCapacity);
+    }
+
+    /**
+     * Returns the picker with the given ID, name and activity start, in epoch nanoseconds. A cached
+     * picker whose name or activity start has changed is replaced.
+     */
+    Picker picker(String id, String name, long activeSince) {
+        return pickers.intern(
+                id,
+                picker -> Objects.equals(picker.getName(), name) && TimestampCodec.toEpochNanos(picker.getActiveSince()) == activeSince,
+                key -> new Picker(key, name, TimestampCodec.toZonedDateTime(activeSince)));
+    }
+
+    Article article(String id, String name, TemperatureZone temperatureZone) {
+        return articles.intern(
+                id,
+                article -> Objects.equals(article.getName(), name) && article.getTemperatureZone() == temperatureZone,
+                key -> new Article(key, name, temperatureZone));
+    }
+
+    String upperCasedName(Article article) {
+        return upperCasedNames.intern(article.getName(), String::toUpperCase);
+    }
+
+    InterningCache<String, Picker> pickers() {
+        return pickers;
+    }
+
+    InterningCache<String, Article> articles() {
+        return articles;
+    }
+
+    InterningCache<String, String> upperCasedNames() {
+        return upperCasedNames;
+    }
+}
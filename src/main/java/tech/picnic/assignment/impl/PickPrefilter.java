@@ -0,0 +1,512 @@
+package tech.picnic.assignment.impl;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Rejects lines which cannot hold a retained pick on their raw bytes, before they reach the JSON
+ * parser. It is exact: a line it rejects would have been rejected by {@link PickDecoder} for the
+ * same reason, while a line it passes may still be rejected after parsing.
+ *
+ * <p>A first pass checks that the root value of the line is well-formed JSON, as the decoder rejects
+ * any line which is not for its syntax. Lines which Jackson would surely fail to parse, such as
+ * truncated ones, are rejected as such, so that a flood of them costs no exception each. A second
+ * pass walks the line the way the decoder does, up to the point at which the decoder would reject
+ * it: the temperature zone of the article, the picker, or the end of an article without a
+ * temperature zone. That part of the line may only hold the fields which the decoder knows, so that
+ * the decoder would have read it the same way. Any line which the prefilter cannot be sure of, such
+ * as one with an unknown field, bytes which are not UTF-8, or an escape in an id or name it
+ * compares, is left to the decoder.
+ */
+final class PickPrefilter {
+
+    enum Verdict {
+        /** The line may hold a retained pick, or it cannot be told without parsing, so it has to be parsed. */
+        PARSE(null),
+        /** The line holds a pick which is filtered out. */
+        FILTERED(Rejection.FILTERED),
+        /** The line is not well-formed JSON. */
+        SYNTAX(Rejection.SYNTAX),
+        /** The line holds a string or an array rather than an object. */
+        NOT_AN_OBJECT(Rejection.NOT_AN_OBJECT),
+        /** The line holds a temperature zone which is not a string. */
+        INVALID_VALUE(Rejection.INVALID_VALUE),
+        /** The line holds an article without a temperature zone. */
+        INCOMPLETE(Rejection.INCOMPLETE);
+
+        /** Why the line is rejected, or {@code null} if it is not. */
+        final Rejection rejection;
+
+        Verdict(Rejection rejection) {
+            this.rejection = rejection;
+        }
+    }
+
+    /** The position returned when the line is not well-formed, or holds something the prefilter does not know. */
+    private static final int UNSURE = -1;
+    /** The position returned at the end of an object. */
+    private static final int OBJECT_END = -2;
+    /** The position returned when the line is surely not well-formed, so that Jackson would fail to parse it. */
+    private static final int MALFORMED = -3;
+    /** The deepest nesting which is checked for being well-formed; deeper lines are left to the decoder. */
+    private static final int MAX_DEPTH = 64;
+
+    private static final byte[] ID = "id".getBytes(UTF_8);
+    private static final byte[] NAME = "name".getBytes(UTF_8);
+    private static final byte[] TIMESTAMP = "timestamp".getBytes(UTF_8);
+    private static final byte[] QUANTITY = "quantity".getBytes(UTF_8);
+    private static final byte[] PICKER = "picker".getBytes(UTF_8);
+    private static final byte[] ACTIVE_SINCE = "active_since".getBytes(UTF_8);
+    private static final byte[] ARTICLE = "article".getBytes(UTF_8);
+    private static final byte[] TEMPERATURE_ZONE = "temperature_zone".getBytes(UTF_8);
+    private static final byte[] TRUE = "true".getBytes(UTF_8);
+    private static final byte[] FALSE = "false".getBytes(UTF_8);
+    private static final byte[] NULL = "null".getBytes(UTF_8);
+
+    private final PickFilter filter;
+    private final byte[][] temperatureZones;
+    private final boolean filtersPickers;
+
+    PickPrefilter(PickFilter filter) {
+        this.filter = filter;
+        this.temperatureZones = filter.getTemperatureZones().stream()
+                .map(zone -> zone.getDisplayName().getBytes(UTF_8))
+                .toArray(byte[][]::new);
+        this.filtersPickers = filter.getAllowedPickers() != null || !filter.getDeniedPickers().isEmpty();
+    }
+
+    Verdict test(byte[] line, int offset, int length) {
+        // Jackson takes a line with a zero byte among its first four for UTF-16 or UTF-32
+        for (int i = offset; i < offset + Math.min(4, length); i++) {
+            if (line[i] == 0) return Verdict.PARSE;
+        }
+        final var scan = new Scan(line, offset + length);
+        final var i = scan.skipWhitespace(offset);
+        if (i == scan.end) return Verdict.PARSE;
+        final var rootEnd = scan.rootValueEnd(i);
+        if (rootEnd == MALFORMED) return Verdict.SYNTAX;
+        if (rootEnd == UNSURE) return Verdict.PARSE;
+        if (line[i] != '{') return Verdict.NOT_AN_OBJECT;
+        return testPick(scan, i + 1);
+    }
+
+    /** Walks the fields of the pick, as {@code PickDecoder#decode(JsonParser, RawPick)} does. */
+    private Verdict testPick(Scan scan, int from) {
+        var i = scan.firstField(from);
+        while (i >= 0) {
+            final var keyEnd = scan.stringEnd(i);
+            final var value = scan.valueStart(keyEnd);
+            if (value == UNSURE) return Verdict.PARSE;
+
+            if (scan.isKey(i, keyEnd, ID) || scan.isKey(i, keyEnd, TIMESTAMP)) {
+                i = scan.scalarEnd(value);
+            } else if (scan.isKey(i, keyEnd, QUANTITY)) {
+                i = scan.line[value] == 'n' ? scan.literalEnd(value, NULL) : scan.numberEnd(value);
+            } else if (scan.isKey(i, keyEnd, PICKER)) {
+                i = testPicker(scan, value);
+                if (i >= 0 && scan.pickerIdFrom >= 0 && !acceptsPicker(scan)) return Verdict.FILTERED;
+            } else if (scan.isKey(i, keyEnd, ARTICLE)) {
+                i = testArticle(scan, value);
+                if (scan.verdict != null) return scan.verdict;
+            } else {
+                return Verdict.PARSE;
+            }
+            i = scan.nextField(i);
+        }
+        // the decoder decides on the whole line, or the line is not well-formed
+        return Verdict.PARSE;
+    }
+
+    /** Walks the fields of the picker, keeping the range of its id, and returns the position after it. */
+    private static int testPicker(Scan scan, int from) {
+        if (scan.line[from] != '{') return UNSURE;
+        var i = scan.firstField(from + 1);
+        while (i >= 0) {
+            final var keyEnd = scan.stringEnd(i);
+            final var value = scan.valueStart(keyEnd);
+            if (value == UNSURE) return UNSURE;
+
+            if (scan.isKey(i, keyEnd, ID)) {
+                i = scan.scalarEnd(value);
+                if (i == UNSURE || scan.escaped) return UNSURE;
+                scan.keepPickerId(value, i);
+            } else if (scan.isKey(i, keyEnd, NAME) || scan.isKey(i, keyEnd, ACTIVE_SINCE)) {
+                i = scan.scalarEnd(value);
+            } else {
+                return UNSURE;
+            }
+            i = scan.nextField(i);
+        }
+        return i == OBJECT_END ? scan.objectEnd : UNSURE;
+    }
+
+    /** Walks the fields of the article, deciding on its temperature zone, and returns the position after it. */
+    private int testArticle(Scan scan, int from) {
+        if (scan.line[from] != '{') return UNSURE;
+        var i = scan.firstField(from + 1);
+        while (i >= 0) {
+            final var keyEnd = scan.stringEnd(i);
+            final var value = scan.valueStart(keyEnd);
+            if (value == UNSURE) return UNSURE;
+
+            if (scan.isKey(i, keyEnd, ID) || scan.isKey(i, keyEnd, NAME)) {
+                i = scan.scalarEnd(value);
+            } else if (scan.isKey(i, keyEnd, TEMPERATURE_ZONE)) {
+                i = testTemperatureZone(scan, value);
+                if (scan.verdict != null) return UNSURE;
+            } else {
+                return UNSURE;
+            }
+            i = scan.nextField(i);
+        }
+        if (i == OBJECT_END && !scan.hasTemperatureZone) scan.verdict = Verdict.INCOMPLETE;
+        return i == OBJECT_END ? scan.objectEnd : UNSURE;
+    }
+
+    private int testTemperatureZone(Scan scan, int from) {
+        final var b = scan.line[from];
+        if (b == '{' || b == '[') {
+            scan.verdict = Verdict.INVALID_VALUE;
+            return UNSURE;
+        }
+        if (b != '"') {
+            if (scan.isDelimited(scan.scalarEnd(from))) scan.verdict = Verdict.INVALID_VALUE;
+            return UNSURE;
+        }
+        final var end = scan.stringEnd(from);
+        if (end == UNSURE || scan.escaped) return UNSURE;
+        if (!isTemperatureZone(scan.line, from + 1, end)) {
+            scan.verdict = Verdict.FILTERED;
+            return UNSURE;
+        }
+        scan.hasTemperatureZone = true;
+        return end + 1;
+    }
+
+    private boolean isTemperatureZone(byte[] line, int from, int to) {
+        for (final var temperatureZone : temperatureZones) {
+            if (Arrays.equals(line, from, to, temperatureZone, 0, temperatureZone.length)) return true;
+        }
+        return false;
+    }
+
+    private boolean acceptsPicker(Scan scan) {
+        if (!filtersPickers) return true;
+        return filter.acceptsPicker(new String(scan.line, scan.pickerIdFrom, scan.pickerIdTo - scan.pickerIdFrom, UTF_8));
+    }
+
+    /** The state of a single pass over a line, as the prefilter itself is shared by the parse workers. */
+    private static final class Scan {
+        private final byte[] line;
+        private final int end;
+        /** The position after the object which {@link #nextField} last found the end of. */
+        private int objectEnd;
+        /** Whether the string which {@link #stringEnd} last read holds an escape. */
+        private boolean escaped;
+        private int pickerIdFrom = UNSURE;
+        private int pickerIdTo;
+        private boolean hasTemperatureZone;
+        private Verdict verdict;
+
+        private Scan(byte[] line, int end) {
+            this.line = line;
+            this.end = end;
+        }
+
+        /** Returns the position of the first key of the object, {@link #OBJECT_END} if it is empty, or {@link #UNSURE}. */
+        private int firstField(int from) {
+            final var i = skipWhitespace(from);
+            if (i < end && line[i] == '}') {
+                objectEnd = i + 1;
+                return OBJECT_END;
+            }
+            return i < end && line[i] == '"' ? i : UNSURE;
+        }
+
+        /** Returns the position of the next key after a value, {@link #OBJECT_END} after the last one, or {@link #UNSURE}. */
+        private int nextField(int from) {
+            if (from < 0) return UNSURE;
+            var i = skipWhitespace(from);
+            if (i == end) return UNSURE;
+            if (line[i] == '}') {
+                objectEnd = i + 1;
+                return OBJECT_END;
+            }
+            if (line[i] != ',') return UNSURE;
+            i = skipWhitespace(i + 1);
+            return i < end && line[i] == '"' ? i : UNSURE;
+        }
+
+        /** Returns the position of the value after the key ending at the given quote, or {@link #UNSURE}. */
+        private int valueStart(int keyEnd) {
+            if (keyEnd == UNSURE) return UNSURE;
+            var i = skipWhitespace(keyEnd + 1);
+            if (i == end || line[i] != ':') return UNSURE;
+            i = skipWhitespace(i + 1);
+            return i < end ? i : UNSURE;
+        }
+
+        private boolean isKey(int keyStart, int keyEnd, byte[] key) {
+            return !escaped && Arrays.equals(line, keyStart + 1, keyEnd, key, 0, key.length);
+        }
+
+        private void keepPickerId(int from, int to) {
+            if (line[from] == 'n') {
+                pickerIdFrom = UNSURE;
+            } else if (line[from] == '"') {
+                pickerIdFrom = from + 1;
+                pickerIdTo = to - 1;
+            } else {
+                pickerIdFrom = from;
+                pickerIdTo = to;
+            }
+        }
+
+        /** Returns the position after the string, number or literal at the given position, or {@link #UNSURE}. */
+        private int scalarEnd(int from) {
+            escaped = false;
+            switch (line[from]) {
+                case '"':
+                    final var stringEnd = stringEnd(from);
+                    return stringEnd == UNSURE ? UNSURE : stringEnd + 1;
+                case 't':
+                    return literalEnd(from, TRUE);
+                case 'f':
+                    return literalEnd(from, FALSE);
+                case 'n':
+                    return literalEnd(from, NULL);
+                default:
+                    return numberEnd(from);
+            }
+        }
+
+        private int literalEnd(int from, byte[] literal) {
+            final var to = from + literal.length;
+            return to <= end && Arrays.equals(line, from, to, literal, 0, literal.length) ? to : UNSURE;
+        }
+
+        /** Returns the position after the number at the given position, as strictly as JSON defines it, or {@link #UNSURE}. */
+        private int numberEnd(int from) {
+            var i = from;
+            if (i < end && line[i] == '-') i++;
+            if (i < end && line[i] == '0') {
+                i++;
+            } else {
+                if (i == end || !isDigit(line[i])) return UNSURE;
+                i = skipDigits(i);
+            }
+            if (i < end && line[i] == '.') {
+                if (i + 1 == end || !isDigit(line[i + 1])) return UNSURE;
+                i = skipDigits(i + 1);
+            }
+            if (i < end && (line[i] == 'e' || line[i] == 'E')) {
+                i++;
+                if (i < end && (line[i] == '+' || line[i] == '-')) i++;
+                if (i == end || !isDigit(line[i])) return UNSURE;
+                i = skipDigits(i);
+            }
+            return i;
+        }
+
+        private int skipDigits(int from) {
+            var i = from;
+            while (i < end && isDigit(line[i])) i++;
+            return i;
+        }
+
+        /**
+         * Returns the position of the quote ending the string at the given position, or {@link
+         * #UNSURE} if it is not well-formed: it holds a control character, an invalid escape, or
+         * bytes which are not UTF-8.
+         */
+        private int stringEnd(int from) {
+            final var stringEnd = checkedStringEnd(from);
+            return stringEnd < 0 ? UNSURE : stringEnd;
+        }
+
+        /**
+         * Returns the position of the quote ending the string at the given position, {@link
+         * #MALFORMED} if it is unterminated or holds a control character or an invalid escape, or
+         * {@link #UNSURE} if it holds bytes which are not UTF-8.
+         */
+        private int checkedStringEnd(int from) {
+            escaped = false;
+            var i = from + 1;
+            while (i < end) {
+                final var b = line[i];
+                if (b == '"') return i;
+                if (b == '\\') {
+                    escaped = true;
+                    i = escapeEnd(i + 1);
+                    if (i == UNSURE) return MALFORMED;
+                } else if (b < 0) {
+                    i = utf8End(i);
+                    if (i == UNSURE) return UNSURE;
+                } else if (b < 0x20) {
+                    return MALFORMED;
+                } else {
+                    i++;
+                }
+            }
+            return MALFORMED;
+        }
+
+        private int escapeEnd(int from) {
+            if (from == end) return UNSURE;
+            switch (line[from]) {
+                case '"':
+                case '\\':
+                case '/':
+                case 'b':
+                case 'f':
+                case 'n':
+                case 'r':
+                case 't':
+                    return from + 1;
+                case 'u':
+                    if (from + 5 > end) return UNSURE;
+                    for (int i = from + 1; i < from + 5; i++) {
+                        if (Character.digit(line[i], 16) < 0) return UNSURE;
+                    }
+                    return from + 5;
+                default:
+                    return UNSURE;
+            }
+        }
+
+        /** Returns the position after the multi-byte UTF-8 sequence at the given position, or {@link #UNSURE} if it is invalid. */
+        private int utf8End(int from) {
+            final var lead = line[from] & 0xFF;
+            final int length;
+            var min = 0x80;
+            var max = 0xBF;
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                length = 2;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                length = 3;
+                if (lead == 0xE0) min = 0xA0;
+                if (lead == 0xED) max = 0x9F;
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                length = 4;
+                if (lead == 0xF0) min = 0x90;
+                if (lead == 0xF4) max = 0x8F;
+            } else {
+                return UNSURE;
+            }
+            if (from + length > end) return UNSURE;
+            final var second = line[from + 1] & 0xFF;
+            if (second < min || second > max) return UNSURE;
+            for (int i = from + 2; i < from + length; i++) {
+                if ((line[i] & 0xC0) != 0x80) return UNSURE;
+            }
+            return from + length;
+        }
+
+        /**
+         * Returns the position after the root value at the given position if it is well-formed JSON,
+         * {@link #MALFORMED} if Jackson would surely fail to parse it, or {@link #UNSURE}. A root
+         * number has to be followed by whitespace, as Jackson requires; anything else after the root
+         * value is ignored, as the decoder ignores it.
+         */
+        private int rootValueEnd(int from) {
+            // a byte order mark, which Jackson skips, or a character it reports
+            if (line[from] < 0) return UNSURE;
+            // a bit per level of nesting, set for an object and clear for an array
+            long objects = 0;
+            var depth = 0;
+            var i = from;
+            values:
+            while (true) {
+                i = skipWhitespace(i);
+                if (i == end) return MALFORMED;
+                var number = false;
+                switch (line[i]) {
+                    case '{':
+                    case '[':
+                        if (depth == MAX_DEPTH) return UNSURE;
+                        final var object = line[i] == '{';
+                        objects = object ? objects | 1L << depth : objects & ~(1L << depth);
+                        depth++;
+                        i = skipWhitespace(i + 1);
+                        if (i < end && line[i] == (object ? '}' : ']')) {
+                            depth--;
+                            i++;
+                            break;
+                        }
+                        if (object) i = memberValueStart(i);
+                        if (i < 0) return i;
+                        continue values;
+                    case '"':
+                        i = checkedStringEnd(i);
+                        if (i < 0) return i;
+                        i++;
+                        break;
+                    case 't':
+                    case 'f':
+                    case 'n':
+                        i = literalEnd(i, line[i] == 't' ? TRUE : line[i] == 'f' ? FALSE : NULL);
+                        if (i == UNSURE) return MALFORMED;
+                        // Jackson rejects a literal which runs on into an identifier
+                        if (i < end && line[i] < 0) return UNSURE;
+                        if (i < end && line[i] >= '0' && line[i] != ']' && line[i] != '}' && Character.isJavaIdentifierPart(line[i])) {
+                            return MALFORMED;
+                        }
+                        break;
+                    default:
+                        if (line[i] != '-' && !isDigit(line[i])) return MALFORMED;
+                        i = numberEnd(i);
+                        if (i == UNSURE) return MALFORMED;
+                        number = true;
+                }
+
+                while (true) {
+                    if (depth == 0) return number && i < end && !isWhitespace(line[i]) ? MALFORMED : i;
+                    i = skipWhitespace(i);
+                    if (i == end) return MALFORMED;
+                    final var object = (objects & 1L << depth - 1) != 0;
+                    if (line[i] == ',') {
+                        i = i + 1;
+                        if (object) i = memberValueStart(skipWhitespace(i));
+                        if (i < 0) return i;
+                        continue values;
+                    }
+                    if (line[i] != (object ? '}' : ']')) return MALFORMED;
+                    depth--;
+                    i++;
+                    number = false;
+                }
+            }
+        }
+
+        /** Returns the position after the colon of the member at the given position, {@link #MALFORMED}, or {@link #UNSURE}. */
+        private int memberValueStart(int from) {
+            if (from == end || line[from] != '"') return MALFORMED;
+            final var keyEnd = checkedStringEnd(from);
+            if (keyEnd < 0) return keyEnd;
+            final var i = skipWhitespace(keyEnd + 1);
+            return i < end && line[i] == ':' ? i + 1 : MALFORMED;
+        }
+
+        /** Whether a value ends at the given position, as it is followed by whitespace or a delimiter. */
+        private boolean isDelimited(int position) {
+            if (position < 0 || position == end) return false;
+            final var b = line[position];
+            return b == ',' || b == '}' || b == ']' || isWhitespace(b);
+        }
+
+        private int skipWhitespace(int from) {
+            var i = from;
+            while (i < end && isWhitespace(line[i])) i++;
+            return i;
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+        }
+    }
+}
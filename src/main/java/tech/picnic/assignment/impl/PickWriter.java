@@ -0,0 +1,75 @@
+package tech.picnic.assignment.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import tech.picnic.assignment.impl.PickAggregator.PickerPicks;
+import tech.picnic.assignment.model.PickerWithPicks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import static com.fasterxml.jackson.core.JsonEncoding.UTF8;
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+
+/**
+ * Streams aggregated pickers to the sink, producing exactly the JSON that serializing the
+ * corresponding {@link PickerWithPicks} through {@link Utilities#OBJECT_MAPPER} would. The same
+ * structure can be written in a binary {@link DataFormat} instead.
+ */
+class PickWriter {
+
+    private static final SerializableString PICKER_NAME = new SerializedString("picker_name");
+    private static final SerializableString ACTIVE_SINCE = new SerializedString("active_since");
+    private static final SerializableString PICKS = new SerializedString("picks");
+    private static final SerializableString ARTICLE_NAME = new SerializedString("article_name");
+    private static final SerializableString TIMESTAMP = new SerializedString("timestamp");
+
+    private final JsonFactory jsonFactory;
+
+    PickWriter() {
+        this(DataFormat.JSON);
+    }
+
+    PickWriter(DataFormat format) {
+        this.jsonFactory = format.factory();
+    }
+
+    void write(List<PickerPicks> pickers, OutputStream sink) throws IOException {
+        final var timestampBuffer = new char[TimestampCodec.MAX_FORMATTED_LENGTH];
+        // the sink is owned by the caller of StreamProcessor#process
+        try (final var generator = jsonFactory.createGenerator(sink, UTF8).disable(AUTO_CLOSE_TARGET)) {
+            generator.writeStartArray();
+            for (final var picker : pickers) {
+                writePicker(generator, picker, timestampBuffer);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static void writePicker(JsonGenerator generator, PickerPicks picker, char[] timestampBuffer) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(PICKER_NAME);
+        generator.writeString(picker.picker().getName());
+        generator.writeFieldName(ACTIVE_SINCE);
+        writeTimestamp(generator, picker.activeSince(), timestampBuffer);
+        generator.writeFieldName(PICKS);
+        generator.writeStartArray();
+        while (picker.nextPick()) {
+            generator.writeStartObject();
+            generator.writeFieldName(ARTICLE_NAME);
+            generator.writeString(picker.articleName());
+            generator.writeFieldName(TIMESTAMP);
+            writeTimestamp(generator, picker.timestamp(), timestampBuffer);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeTimestamp(JsonGenerator generator, long timestamp, char[] buffer) throws IOException {
+        generator.writeString(buffer, 0, TimestampCodec.format(timestamp, buffer));
+    }
+}
@@ -4,12 +4,94 @@ import com.google.auto.service.AutoService;
 import tech.picnic.assignment.api.EventProcessorFactory;
 import tech.picnic.assignment.api.StreamProcessor;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static java.lang.Thread.currentThread;
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
 
 @AutoService(EventProcessorFactory.class)
 public final class PickingEventProcessorFactory implements EventProcessorFactory {
+
+    private static final AtomicInteger FACTORY_IDS = new AtomicInteger();
+
+    private final ProcessorConfig config;
+    private final ProcessorMetrics metrics = new ProcessorMetrics();
+    private final ObjectName metricsName;
+    private final ProcessorExecutors executors;
+    private final OutputBudget outputBudget;
+    private final DeadLetterSink deadLetters;
+
+    public PickingEventProcessorFactory() {
+        this(ProcessorConfig.builder().build());
+    }
+
+    public PickingEventProcessorFactory(ProcessorConfig config) {
+        this.config = config;
+        this.deadLetters = openDeadLetters(config);
+        this.metricsName = registerMetrics();
+        this.executors = new ProcessorExecutors(config.getParseWorkers(), config.getMaxBlockingThreads());
+        this.outputBudget = config.isReserveOutputTime() ? OutputBudget.adaptive() : OutputBudget.unreserved();
+    }
+
     @Override
     public StreamProcessor createProcessor(int maxEvents, Duration maxTime) {
-        return new PickingStreamProcessor(new SourceReader(maxEvents, maxTime));
+        final var interner = new PickInterner(config.getPickerCacheSize(), config.getArticleCacheSize());
+        final var pickDecoder = new PickDecoder(config, interner, metrics, deadLetters);
+        final var sourceReader = new SourceReader(maxEvents, maxTime, pickDecoder, config, metrics, executors, outputBudget);
+
+        final Supplier<PickColumns> columns = maxEvents >= config.getOffHeapThreshold() ? PickColumns::offHeap : PickColumns::onHeap;
+        final var shards = config.getAggregationShards();
+        final Supplier<PickAggregator> aggregators = () -> new PickAggregator(config, interner, columns.get());
+        final Supplier<Aggregation> aggregations = shards > 1 ? () -> new ShardedAggregation(shards, aggregators, metrics, executors.blocking()) : aggregators::get;
+        return new PickingStreamProcessor(sourceReader, aggregations, metrics, config, outputBudget);
+    }
+
+    /** The name under which the metrics of all processors created by this factory are registered, if any. */
+    ObjectName metricsName() {
+        return metricsName;
+    }
+
+    /** Stops the threads shared by the processors of this factory, flushes the dead letters, and unregisters the metrics. */
+    @Override
+    public void close() {
+        executors.close();
+        deadLetters.close();
+        if (metricsName == null) return;
+        try {
+            getPlatformMBeanServer().unregisterMBean(metricsName);
+        } catch (JMException e) {
+            System.err.println(format("Thread[%s]: Could not unregister MBean [%s].", currentThread().getName(), metricsName));
+        }
+    }
+
+    private static DeadLetterSink openDeadLetters(ProcessorConfig config) {
+        final var file = config.getDeadLetterFile();
+        if (file == null) return DeadLetterSink.discarding();
+        try {
+            return new DeadLetterSink(Files.newOutputStream(file, CREATE, APPEND));
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Could not open the dead letter file [%s]", file), e);
+        }
+    }
+
+    private ObjectName registerMetrics() {
+        try {
+            final var name = new ObjectName(format("tech.picnic.assignment:type=ProcessorMetrics,factory=%d", FACTORY_IDS.incrementAndGet()));
+            getPlatformMBeanServer().registerMBean(metrics, name);
+            return name;
+        } catch (JMException e) {
+            System.err.println(format("Thread[%s]: Could not register the processor metrics as an MBean.", currentThread().getName()));
+            return null;
+        }
     }
 }
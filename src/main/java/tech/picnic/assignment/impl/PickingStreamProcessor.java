@@ -1,73 +1,225 @@
 package tech.picnic.assignment.impl;
 
 import tech.picnic.assignment.api.StreamProcessor;
-import tech.picnic.assignment.model.*;
+import tech.picnic.assignment.impl.PickAggregator.PickerPicks;
+import tech.picnic.assignment.model.TemperatureZone;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.function.Predicate;
-
-import static java.util.Comparator.comparing;
-import static java.util.Map.Entry.comparingByKey;
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toUnmodifiableList;
-import static tech.picnic.assignment.impl.Utilities.OBJECT_MAPPER;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
 import static tech.picnic.assignment.model.TemperatureZone.Ambient;
 
 public class PickingStreamProcessor implements StreamProcessor {
 
-    private static final TemperatureZone REQUIRED_TEMPERATURE_ZONE = Ambient;
+    static final TemperatureZone REQUIRED_TEMPERATURE_ZONE = Ambient;
 
     private final SourceReader sourceReader;
+    private final Supplier<Aggregation> aggregations;
+    private final ProcessorMetrics metrics;
+    private final ProcessorConfig config;
+    private final OutputBudget outputBudget;
+    private final PickWriter pickWriter;
+    /** The aggregation kept across calls if the config has a state file, or else {@code null}. */
+    private final Aggregation state;
+    /** Whether the state could not be rolled back after a failed call, so that it no longer matches its file. Guarded by the state. */
+    private boolean stateLost;
+
+    PickingStreamProcessor(SourceReader sourceReader, PickInterner interner) {
+        this(sourceReader, () -> new PickAggregator(REQUIRED_TEMPERATURE_ZONE, interner), new ProcessorMetrics(), ProcessorConfig.builder().build(),
+                OutputBudget.unreserved());
+    }
 
-    PickingStreamProcessor(SourceReader sourceReader) {
+    /** Creates a processor which teaches the output budget how long its windows take to write. */
+    PickingStreamProcessor(SourceReader sourceReader, Supplier<Aggregation> aggregations, ProcessorMetrics metrics, ProcessorConfig config,
+                           OutputBudget outputBudget) {
         this.sourceReader = sourceReader;
+        this.aggregations = aggregations;
+        this.metrics = metrics;
+        this.config = config;
+        this.outputBudget = outputBudget;
+        this.pickWriter = new PickWriter(config.getOutputFormat());
+        this.state = config.getStateFile() != null ? restoreState(aggregations.get(), config.getStateFile()) : null;
+    }
+
+    /** Restores the state, counting its picks as retained once, rather than with every window which writes them again. */
+    private Aggregation restoreState(Aggregation aggregation, Path stateFile) {
+        try {
+            if (AggregationSnapshot.restore(stateFile, aggregation)) {
+                final var picks = aggregation.size();
+                metrics.recordRetainedPicks(picks);
+                System.err.println(format("Thread[%s]: Restored %d picks of the aggregation state from %s.", currentThread().getName(), picks, stateFile));
+            }
+            return aggregation;
+        } catch (IOException | RuntimeException e) {
+            aggregation.close();
+            throw new UncheckedIOException(new IOException("Could not restore the aggregation state from " + stateFile, e));
+        }
     }
 
     @Override
     public void process(InputStream source, OutputStream sink) throws IOException {
-        final var pickers = sourceReader.readLines(source)
-                .stream()
-                .filter(requiredArticles())
-                .collect(groupingBy(PickRequest::getPicker))
-                .entrySet()
-                .stream()
-                .sorted(comparingByKey(comparing(Picker::getActiveSince).thenComparing(Picker::getId)))
-                .map(toPickerWithPicks())
-                .collect(toUnmodifiableList());
-
-        OBJECT_MAPPER.writeValue(sink, pickers);
+        process(sink, (picks, heldPicks) -> sourceReader.readLines(source, picks, heldPicks), () -> sourceReader.open(source));
+    }
+
+    /**
+     * Processes the events of several sources as if they were one, each source being read
+     * concurrently by its own thread. The limits on events and time apply to all sources together,
+     * and the output is ordered just like that of a single source. Picks of one picker with equal
+     * timestamps from different sources are written in the order in which they were read.
+     */
+    public void process(List<InputStream> sources, OutputStream sink) throws IOException {
+        process(sink, (picks, heldPicks) -> sourceReader.readMergedLines(sources, picks, heldPicks), () -> sourceReader.open(sources));
+    }
+
+    /**
+     * Reads a single window, or in continuous mode every window of a session, into a new aggregation
+     * or, given a state file, into the one kept across calls. Calls using the state take turns, and a
+     * call which fails rolls the state back to the one last saved, so that its partly read window is
+     * not written by the next call.
+     */
+    private void process(OutputStream sink, ObjIntConsumer<Aggregation> readWindow, Supplier<SourceReader.Session> sessions) throws IOException {
+        if (state == null) {
+            try (final var aggregation = aggregations.get()) {
+                process(sink, readWindow, sessions, aggregation);
+            }
+            return;
+        }
+        synchronized (state) {
+            if (stateLost) throw new IOException("The aggregation state was lost, as it could not be restored from " + config.getStateFile());
+            try {
+                process(sink, readWindow, sessions, state);
+            } catch (IOException | RuntimeException e) {
+                rollBackState(e);
+                throw e;
+            }
+        }
+    }
+
+    private void process(OutputStream sink, ObjIntConsumer<Aggregation> readWindow, Supplier<SourceReader.Session> sessions,
+                         Aggregation aggregation) throws IOException {
+        try {
+            if (config.isContinuous()) {
+                try (final var session = sessions.get()) {
+                    processWindows(session, sink, aggregation);
+                }
+            } else {
+                final var before = config.isStatsReport() ? metrics.snapshot() : null;
+                final var heldPicks = heldPicks(aggregation);
+                readWindow.accept(aggregation, heldPicks);
+                write(aggregation, sink, heldPicks, before);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
-    private Predicate<PickRequest> requiredArticles() {
-        return pick -> pick.getArticle().getTemperatureZone() == REQUIRED_TEMPERATURE_ZONE;
+    /** Drops every pick which was not saved, by restoring the state from its file, and adds any failure to do so to the given one. */
+    private void rollBackState(Exception failure) {
+        state.reset();
+        try {
+            AggregationSnapshot.restore(config.getStateFile(), state);
+        } catch (IOException | RuntimeException e) {
+            // saving a partly restored state would drop picks from the file, so the state is no longer used
+            stateLost = true;
+            failure.addSuppressed(new IOException("Could not roll back the aggregation state to " + config.getStateFile(), e));
+        }
     }
 
-    private Function<Map.Entry<Picker, List<PickRequest>>, PickerWithPicks> toPickerWithPicks() {
-        return entry -> {
-            final var picks = entry
-                    .getValue()
-                    .stream()
-                    .sorted(comparing(PickRequest::getTimestamp))
-                    .map(toPickResponse())
-                    .collect(toUnmodifiableList());
-            return PickerWithPicks.builder()
-                    .name(entry.getKey().getName())
-                    .activeSince(entry.getKey().getActiveSince())
-                    .picks(picks)
-                    .build();
-        };
+    /**
+     * Writes one document per window, each on its own line if the output is text, reusing the
+     * aggregation from one window to the next. Without a state file, every window starts afresh.
+     */
+    private void processWindows(SourceReader.Session session, OutputStream sink, Aggregation aggregation) throws IOException {
+        boolean moreWindows;
+        do {
+            final var before = config.isStatsReport() ? metrics.snapshot() : null;
+            final var heldPicks = heldPicks(aggregation);
+            moreWindows = session.readWindow(aggregation, heldPicks);
+            write(aggregation, sink, heldPicks, before);
+            if (config.getOutputFormat().isText()) sink.write('\n');
+            sink.flush();
+            if (state == null) aggregation.reset();
+        } while (moreWindows);
     }
 
-    private Function<PickRequest, PickResponse> toPickResponse() {
-        return pick -> PickResponse.builder()
-                .name(pick.getArticle().getName().toUpperCase())
-                .timestamp(pick.getTimestamp())
-                .build();
+    /** The picks which the aggregation holds from earlier calls or windows, and which are written again with the next window. */
+    private int heldPicks(Aggregation aggregation) {
+        return aggregation == state ? state.size() : 0;
     }
 
+    /** Writes the picks of the aggregation, of which all but the held ones were retained by this window. */
+    private void write(Aggregation aggregation, OutputStream sink, int heldPicks, ProcessorMetrics.Snapshot before) throws IOException {
+        try {
+            final var sortStart = nanoTime();
+            final var sortEvent = new ProcessorEvents.Sort();
+            sortEvent.begin();
+            final var pickers = aggregation.sortedPickers();
+            sortEvent.end();
+            metrics.sort.record(nanoTime() - sortStart);
+            final var retainedPicks = pickers.stream().mapToInt(PickerPicks::size).sum();
+            metrics.recordRetainedPicks(retainedPicks - heldPicks);
+            if (sortEvent.shouldCommit()) {
+                sortEvent.pickers = pickers.size();
+                sortEvent.picks = retainedPicks;
+                sortEvent.commit();
+            }
+
+            final var serializeStart = nanoTime();
+            final var serializeEvent = new ProcessorEvents.Serialize();
+            // the written bytes are only counted while the event is recorded
+            final var out = serializeEvent.isEnabled() ? new CountingOutputStream(sink) : null;
+            serializeEvent.begin();
+            pickWriter.write(pickers, out != null ? out : sink);
+            serializeEvent.end();
+            final var end = nanoTime();
+            metrics.serialize.record(end - serializeStart);
+            outputBudget.record(retainedPicks, end - sortStart);
+            if (serializeEvent.shouldCommit()) {
+                serializeEvent.pickers = pickers.size();
+                serializeEvent.picks = retainedPicks;
+                serializeEvent.bytes = out.count;
+                serializeEvent.commit();
+            }
+            // the state is saved once its picks are written, so the file never holds picks which were not
+            if (state != null) AggregationSnapshot.save(state, config.getStateFile());
+        } finally {
+            if (before != null) System.err.println(metrics.snapshot().minus(before).summary());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (state != null) state.close();
+    }
+
+    /** Counts the bytes written to the sink. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
 }
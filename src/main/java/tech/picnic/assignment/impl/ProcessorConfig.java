@@ -0,0 +1,120 @@
+package tech.picnic.assignment.impl;
+
+import lombok.Builder;
+import lombok.Value;
+import tech.picnic.assignment.api.StreamProcessor;
+
+import java.nio.file.Path;
+
+/** Tunes how the {@link StreamProcessor}s created by {@link PickingEventProcessorFactory} do their work. */
+@Value
+@Builder
+public class ProcessorConfig {
+
+    /**
+     * The number of threads which decode events in parallel. With a single worker, events are
+     * decoded on the thread calling {@link StreamProcessor#process}.
+     */
+    @Builder.Default
+    private final int parseWorkers = 1;
+
+    /**
+     * The maximum number of platform threads for blocking work, such as reading sources and
+     * aggregating shards, shared by all processors of a factory. Every running processor takes two
+     * such threads per source, one reading lines and one waiting for the source, plus one per
+     * aggregation shard. A wait left pending by a timeout keeps its thread until the source returns.
+     * Unused on JDKs with virtual threads.
+     */
+    @Builder.Default
+    private final int maxBlockingThreads = 256;
+
+    /**
+     * Whether a source which is a regular file, such as redirected standard input, is memory-mapped
+     * and split into lines on its raw bytes, rather than read line by line as text.
+     */
+    @Builder.Default
+    private final boolean mapFiles = true;
+
+    /** Selects the picks which are retained. By default, those of every picker in the ambient zone. */
+    @Builder.Default
+    private final PickFilter pickFilter = PickFilter.builder().build();
+
+    /** The maximum number of distinct pickers that are kept as canonical instances. */
+    @Builder.Default
+    private final int pickerCacheSize = 1_000;
+
+    /** The maximum number of distinct articles that are kept as canonical instances. */
+    @Builder.Default
+    private final int articleCacheSize = 10_000;
+
+    /**
+     * The {@code maxEvents} from which retained picks are kept in direct buffers instead of on the
+     * heap. By default, picks are always kept on the heap.
+     */
+    @Builder.Default
+    private final int offHeapThreshold = Integer.MAX_VALUE;
+
+    /**
+     * The number of threads over which picks are partitioned by picker for aggregation. With a single
+     * shard, picks are aggregated on the thread calling {@link StreamProcessor#process}.
+     */
+    @Builder.Default
+    private final int aggregationShards = 1;
+
+    /**
+     * The number of bytes which retained picks may take in memory, shared by all aggregation shards.
+     * Beyond it, sorted runs of picks are spilled to temporary files. By default, picks are never
+     * spilled.
+     */
+    @Builder.Default
+    private final long memoryBudget = Long.MAX_VALUE;
+
+    /**
+     * Whether {@link StreamProcessor#process} keeps reading the source in tumbling windows of at most
+     * {@code maxEvents} events and {@code maxTime} each, writing one JSON array per window on its own
+     * line, until the source ends. Otherwise, it reads a single window.
+     */
+    @Builder.Default
+    private final boolean continuous = false;
+
+    /**
+     * Whether {@code maxTime} bounds writing the result as well as reading the source. If so,
+     * reading stops early enough to leave time for sorting and writing the picks read so far, as
+     * estimated from the cost per pick of the windows written before by processors of the same
+     * factory. Otherwise, all of {@code maxTime} is spent reading.
+     */
+    @Builder.Default
+    private final boolean reserveOutputTime = true;
+
+    /**
+     * The format in which pickers are written. In continuous mode, binary documents follow each
+     * other without line breaks. The format of the source is always detected from its first bytes.
+     */
+    @Builder.Default
+    private final DataFormat outputFormat = DataFormat.JSON;
+
+    /**
+     * The file to which malformed lines are appended, each with the reason it was rejected, or {@code
+     * null} to drop them. See {@link DeadLetterSink}.
+     */
+    @Builder.Default
+    private final Path deadLetterFile = null;
+
+    /**
+     * The file holding the aggregation state of a processor across its calls, or {@code null} to
+     * start every call afresh. When set, a processor starts from the snapshot in this file, if any,
+     * adds the events of every call to what it retained before, writes the picks of all calls so
+     * far, and then saves its state back to the file. See {@link AggregationSnapshot}. Only one
+     * processor at a time should use a file.
+     *
+     * <p>The state is never trimmed, so the picks written by every call, and the time reserved
+     * within {@code maxTime} to write them, grow with every call. Once writing them takes most of
+     * {@code maxTime}, a call hardly reads any new events. Delete the file to start afresh.
+     */
+    @Builder.Default
+    private final Path stateFile = null;
+
+    /** Whether every window read by {@link StreamProcessor#process} prints a summary of its metrics to stderr. */
+    @Builder.Default
+    private final boolean statsReport = false;
+}
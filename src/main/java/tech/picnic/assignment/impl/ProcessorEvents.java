@@ -0,0 +1,142 @@
+package tech.picnic.assignment.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The Flight Recorder events of the processing phases, which line up what the processors were doing
+ * with the GC pauses and CPU samples of the same recording. They are disabled unless enabled by a
+ * settings profile, such as the bundled {@value #SETTINGS}, which can be used next to the default
+ * one, e.g. {@code jcmd <pid> JFR.start settings=default settings=/path/to/picking.jfc}.
+ *
+ * <p>Every event covers one batch of lines, or one window for sorting and serialization. The picks
+ * of every picker are sorted per aggregator, within the sort of the window, or whenever they are
+ * spilled to disk; spilled runs are merged while they are written, within serialization. Filtering
+ * takes place while decoding, so the picks it drops are among the rejected lines of a decode event.
+ */
+final class ProcessorEvents {
+
+    /** The resource holding the settings which enable every event. */
+    static final String SETTINGS = "picking.jfc";
+
+    private ProcessorEvents() {}
+
+    /** The settings of {@value #SETTINGS}, to start a recording with programmatically. */
+    static Configuration settings() throws IOException, ParseException {
+        try (final var reader = new InputStreamReader(ProcessorEvents.class.getResourceAsStream(SETTINGS), UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+
+    @Name("tech.picnic.assignment.ReadBatch")
+    @Label("Read Batch")
+    @Category("Picking Processor")
+    @Description("Waiting for, and taking, a batch of lines from the source")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ReadBatch extends Event {
+        @Label("Lines")
+        int lines;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("tech.picnic.assignment.Decode")
+    @Label("Decode")
+    @Category("Picking Processor")
+    @Description("Decoding and filtering a batch of lines")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Decode extends Event {
+        @Label("Lines")
+        int lines;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Picks")
+        @Description("The lines decoded into retained picks")
+        int picks;
+
+        @Label("Rejected Lines")
+        @Description("The lines which were malformed or filtered out")
+        int rejected;
+    }
+
+    @Name("tech.picnic.assignment.Aggregate")
+    @Label("Aggregate")
+    @Category("Picking Processor")
+    @Description("Adding the picks of a batch to the aggregation")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Aggregate extends Event {
+        @Label("Picks")
+        int picks;
+    }
+
+    @Name("tech.picnic.assignment.Sort")
+    @Label("Sort")
+    @Category("Picking Processor")
+    @Description("Sorting the pickers of a window, and the picks of every picker")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Sort extends Event {
+        @Label("Pickers")
+        int pickers;
+
+        @Label("Picks")
+        int picks;
+    }
+
+    @Name("tech.picnic.assignment.SortPicks")
+    @Label("Sort Picks")
+    @Category("Picking Processor")
+    @Description("Sorting the picks in memory of every picker chronologically, in one aggregator or shard")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SortPicks extends Event {
+        @Label("Pickers")
+        int pickers;
+
+        @Label("Picks")
+        int picks;
+
+        @Label("Spill")
+        @Description("Whether the picks are sorted to be spilled to disk, rather than to be written")
+        boolean spill;
+    }
+
+    @Name("tech.picnic.assignment.Serialize")
+    @Label("Serialize")
+    @Category("Picking Processor")
+    @Description("Writing the picks of a window to the sink")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Serialize extends Event {
+        @Label("Pickers")
+        int pickers;
+
+        @Label("Picks")
+        int picks;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+}
@@ -0,0 +1,96 @@
+package tech.picnic.assignment.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The threads shared by all processors of one {@link PickingEventProcessorFactory}, so that no
+ * threads are created or torn down per batch.
+ *
+ * <p>Blocking work, which is reading lines from a source, waiting for a read of a source which
+ * could block (see {@link InterruptibleSource}) and aggregating a shard of picks, runs on virtual
+ * threads where the JDK offers them (21 and later). Otherwise it runs on a cached pool of at most
+ * {@code maxBlockingThreads} platform threads; beyond that, new tasks are rejected. Decoding is
+ * CPU-bound and always runs on a fixed pool of platform threads.
+ */
+final class ProcessorExecutors implements AutoCloseable {
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ExecutorService blocking;
+    private final ExecutorService parsing;
+    private final boolean virtualThreads;
+
+    ProcessorExecutors(int parseThreads, int maxBlockingThreads) {
+        final var virtual = newVirtualThreadPerTaskExecutor();
+        this.virtualThreads = virtual != null;
+        this.blocking = virtual != null
+                ? virtual
+                : new ThreadPoolExecutor(0, maxBlockingThreads, KEEP_ALIVE_SECONDS, SECONDS, new SynchronousQueue<>(), daemonThreads("picking-blocking-%d"));
+        final var parsing = new ThreadPoolExecutor(parseThreads, parseThreads, KEEP_ALIVE_SECONDS, SECONDS, new LinkedBlockingQueue<>(), daemonThreads("picking-parse-%d"));
+        parsing.allowCoreThreadTimeOut(true);
+        this.parsing = parsing;
+    }
+
+    /** The executors used by processors which were not created by a factory. They are never closed. */
+    static ProcessorExecutors defaults() {
+        return Defaults.INSTANCE;
+    }
+
+    /**
+     * Runs tasks which spend most of their time blocked, such as line producers, reads of a source
+     * which could block, and aggregation shards.
+     */
+    ExecutorService blocking() {
+        return blocking;
+    }
+
+    /** Runs decoding tasks. */
+    ExecutorService parsing() {
+        return parsing;
+    }
+
+    boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public void close() {
+        blocking.shutdownNow();
+        parsing.shutdownNow();
+    }
+
+    /** Returns {@code Executors.newVirtualThreadPerTaskExecutor()}, or {@code null} if this JDK lacks it. */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            System.err.println(format("Thread[%s]: Could not create virtual threads, falling back to platform threads.", currentThread().getName()));
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String nameFormat) {
+        final var counter = new AtomicInteger();
+        return runnable -> {
+            final var thread = new Thread(runnable, format(nameFormat, counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Defaults {
+        private static final ProcessorExecutors INSTANCE = new ProcessorExecutors(Runtime.getRuntime().availableProcessors(), 256);
+    }
+}
@@ -0,0 +1,199 @@
+package tech.picnic.assignment.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+import static java.lang.System.lineSeparator;
+import static java.lang.Thread.currentThread;
+
+/** Counts lines and picks, and records timings and queue depths, as they pass through the processors. */
+final class ProcessorMetrics implements ProcessorMetricsMXBean {
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder picksParsed = new LongAdder();
+    private final LongAdder malformedLines = new LongAdder();
+    private final LongAdder[] rejections = newAdders(Rejection.values().length);
+    private final LongAdder droppedDeadLetters = new LongAdder();
+    private final LongAdder filteredPicks = new LongAdder();
+    private final LongAdder retainedPicks = new LongAdder();
+    private final LongAdder timedOutWindows = new LongAdder();
+
+    final Histogram read = new Histogram();
+    final Histogram parse = new Histogram();
+    final Histogram aggregate = new Histogram();
+    final Histogram sort = new Histogram();
+    final Histogram serialize = new Histogram();
+    final Histogram lineQueueDepth = new Histogram();
+    final Histogram decodeQueueDepth = new Histogram();
+    final Histogram shardQueueDepth = new Histogram();
+
+    void recordLinesRead(int lines) {
+        linesRead.add(lines);
+    }
+
+    void recordPicksParsed(int picks) {
+        picksParsed.add(picks);
+    }
+
+    void recordMalformedLine(Rejection reason) {
+        malformedLines.increment();
+        rejections[reason.ordinal()].increment();
+    }
+
+    void recordDroppedDeadLetter() {
+        droppedDeadLetters.increment();
+    }
+
+    void recordFilteredPick() {
+        filteredPicks.increment();
+    }
+
+    void recordRetainedPicks(int picks) {
+        retainedPicks.add(picks);
+    }
+
+    void recordTimedOutWindow() {
+        timedOutWindows.increment();
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getPicksParsed() {
+        return picksParsed.sum();
+    }
+
+    @Override
+    public long getMalformedLines() {
+        return malformedLines.sum();
+    }
+
+    @Override
+    public Map<String, Long> getMalformedLinesByReason() {
+        final var byReason = new LinkedHashMap<String, Long>();
+        for (final var reason : Rejection.values()) {
+            if (reason != Rejection.FILTERED) byReason.put(reason.name(), rejections[reason.ordinal()].sum());
+        }
+        return byReason;
+    }
+
+    @Override
+    public long getDroppedDeadLetters() {
+        return droppedDeadLetters.sum();
+    }
+
+    @Override
+    public long getFilteredPicks() {
+        return filteredPicks.sum();
+    }
+
+    @Override
+    public long getRetainedPicks() {
+        return retainedPicks.sum();
+    }
+
+    @Override
+    public long getTimedOutWindows() {
+        return timedOutWindows.sum();
+    }
+
+    @Override
+    public HistogramSnapshot getReadNanos() {
+        return read.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getParseNanos() {
+        return parse.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getAggregateNanos() {
+        return aggregate.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getSortNanos() {
+        return sort.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getSerializeNanos() {
+        return serialize.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getLineQueueDepth() {
+        return lineQueueDepth.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getDecodeQueueDepth() {
+        return decodeQueueDepth.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getShardQueueDepth() {
+        return shardQueueDepth.snapshot();
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        final var adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * The metrics at one point in time. Subtracting an earlier snapshot yields what happened in
+     * between, which is exact as long as no other processor of the same factory ran meanwhile.
+     */
+    static final class Snapshot {
+        private final long[] counters;
+        private final HistogramSnapshot[] histograms;
+
+        private Snapshot(ProcessorMetrics metrics) {
+            this(new long[]{metrics.getLinesRead(), metrics.getPicksParsed(), metrics.getMalformedLines(), metrics.getFilteredPicks(), metrics.getRetainedPicks()},
+                    new HistogramSnapshot[]{metrics.getReadNanos(), metrics.getParseNanos(), metrics.getAggregateNanos(), metrics.getSortNanos(),
+                            metrics.getSerializeNanos(), metrics.getLineQueueDepth(), metrics.getDecodeQueueDepth(), metrics.getShardQueueDepth()});
+        }
+
+        private Snapshot(long[] counters, HistogramSnapshot[] histograms) {
+            this.counters = counters;
+            this.histograms = histograms;
+        }
+
+        Snapshot minus(Snapshot earlier) {
+            final var counters = new long[this.counters.length];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = this.counters[i] - earlier.counters[i];
+            }
+            final var histograms = new HistogramSnapshot[this.histograms.length];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = this.histograms[i].minus(earlier.histograms[i]);
+            }
+            return new Snapshot(counters, histograms);
+        }
+
+        String summary() {
+            final var thread = currentThread().getName();
+            final var summary = new StringBuilder(format(
+                    "Thread[%s]: Read [%d] lines: [%d] parsed, [%d] malformed, [%d] filtered, [%d] retained",
+                    thread, counters[0], counters[1], counters[2], counters[3], counters[4]));
+            final String[] names = {"read ns", "parse ns", "aggregate ns", "sort ns", "serialize ns", "line queue", "decode queue", "shard queue"};
+            for (int i = 0; i < names.length; i++) {
+                if (histograms[i].getCount() == 0) continue;
+                summary.append(lineSeparator()).append(format("Thread[%s]:   %-12s %s", thread, names[i], histograms[i]));
+            }
+            return summary.toString();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package tech.picnic.assignment.impl;
+
+import java.util.Map;
+
+/**
+ * The metrics of all processors created by one {@link PickingEventProcessorFactory}. Timings are in
+ * nanoseconds and are recorded per batch of lines; queue depths are sampled per batch.
+ */
+public interface ProcessorMetricsMXBean {
+
+    /** The non-empty lines read from the sources, up to {@code maxEvents}. */
+    long getLinesRead();
+
+    /** The lines decoded into picks which the {@link PickFilter} retains, for both their temperature zone and their picker. */
+    long getPicksParsed();
+
+    long getMalformedLines();
+
+    /** The malformed lines per {@link Rejection}. */
+    Map<String, Long> getMalformedLinesByReason();
+
+    /** The malformed lines which were not written to the dead letters, as the writer fell behind. */
+    long getDroppedDeadLetters();
+
+    /**
+     * The picks which the {@link PickFilter} drops, for their temperature zone or their picker,
+     * whether they are dropped on their raw bytes or once parsed.
+     */
+    long getFilteredPicks();
+
+    /** The picks written to the sinks. */
+    long getRetainedPicks();
+
+    /** The windows whose reading was ended by {@code maxTime} rather than by {@code maxEvents} or the end of the source. */
+    long getTimedOutWindows();
+
+    /** The time spent waiting for lines from the source. */
+    HistogramSnapshot getReadNanos();
+
+    HistogramSnapshot getParseNanos();
+
+    HistogramSnapshot getAggregateNanos();
+
+    HistogramSnapshot getSortNanos();
+
+    HistogramSnapshot getSerializeNanos();
+
+    /** The batches of lines which were read from a stream but not yet taken for decoding. */
+    HistogramSnapshot getLineQueueDepth();
+
+    /** The batches waiting to be decoded by, or collected from, the parse workers. */
+    HistogramSnapshot getDecodeQueueDepth();
+
+    /** The batches waiting to be aggregated by an aggregation shard. */
+    HistogramSnapshot getShardQueueDepth();
+}
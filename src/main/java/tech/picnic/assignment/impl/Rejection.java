@@ -0,0 +1,19 @@
+package tech.picnic.assignment.impl;
+
+/** Why an event was not retained. Every reason but {@link #FILTERED} makes it a malformed line. */
+enum Rejection {
+    /** The event is well-formed, but not selected by the {@link PickFilter}. */
+    FILTERED,
+    /** The root value of the line is not well-formed JSON, whatever else is wrong with it. */
+    SYNTAX,
+    /** The event is not an object. */
+    NOT_AN_OBJECT,
+    /** The event, its picker or its article holds a field which the model does not know. */
+    UNKNOWN_FIELD,
+    /** A field holds a value of the wrong type, such as an object for an id, or text other than an integer for a quantity. */
+    INVALID_VALUE,
+    /** A timestamp cannot be parsed, or lies outside the supported range. */
+    INVALID_TIMESTAMP,
+    /** A field which the processor needs is missing. */
+    INCOMPLETE
+}
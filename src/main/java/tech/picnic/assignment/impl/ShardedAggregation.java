@@ -0,0 +1,247 @@
+package tech.picnic.assignment.impl;
+
+import tech.picnic.assignment.impl.PickAggregator.PickerPicks;
+import tech.picnic.assignment.model.Picker;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static java.lang.Math.floorMod;
+import static java.lang.String.format;
+import static java.lang.Thread.currentThread;
+import static java.util.Comparator.comparing;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static tech.picnic.assignment.impl.PickAggregator.PICKER_ORDER;
+
+/**
+ * Partitions picks by picker ID over a number of shards. Every shard is a {@link PickAggregator}
+ * owned by a single thread, so shards need no locking, and every shard sorts its own pickers and
+ * picks. As a picker belongs to exactly one shard, a k-way merge of the sorted shards yields the
+ * overall order.
+ *
+ * <p>A shard's thread stops once its pickers are sorted, and is started again by the next pick
+ * handed to the shard. Retained picks are handed to a stopped shard's aggregator directly.
+ */
+final class ShardedAggregation implements Aggregation {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 16;
+    // batches are never empty, so an empty batch can safely mark the end of the picks
+    private static final List<PickEvent> END_OF_PICKS = List.of();
+    // told apart from the end of the picks by identity, and marks that the picks are to be dropped instead of sorted
+    private static final List<PickEvent> DROP_PICKS = Collections.unmodifiableList(new ArrayList<>(0));
+
+    private final ExecutorService executor;
+    private final Shard[] shards;
+    private final ProcessorMetrics metrics;
+
+    ShardedAggregation(int shardCount, Supplier<PickAggregator> aggregators) {
+        this(shardCount, aggregators, new ProcessorMetrics(), ProcessorExecutors.defaults().blocking());
+    }
+
+    /** Creates an aggregation whose shards run on the given executor, which must be able to run all shards at once. */
+    ShardedAggregation(int shardCount, Supplier<PickAggregator> aggregators, ProcessorMetrics metrics, ExecutorService executor) {
+        this.metrics = metrics;
+        this.executor = executor;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(aggregators.get());
+        }
+    }
+
+    @Override
+    public void accept(PickEvent pick) {
+        final var shard = shardOf(pick.getPicker());
+        if (!shard.running) shard.start();
+        shard.pending.add(pick);
+        if (shard.pending.size() == BATCH_SIZE) shard.flush();
+    }
+
+    @Override
+    public void acceptRetained(Picker picker, long timestamp, String articleName) {
+        final var shard = shardOf(picker);
+        if (shard.running) shard.stop().sortedPickers();
+        shard.aggregator.acceptRetained(picker, timestamp, articleName);
+    }
+
+    @Override
+    public void forEachRetained(RetainedPickConsumer picks) {
+        for (final var shard : shards) {
+            if (shard.running) shard.stop().sortedPickers();
+            shard.aggregator.forEachRetained(picks);
+        }
+    }
+
+    @Override
+    public int size() {
+        var size = 0;
+        for (final var shard : shards) {
+            if (shard.running) shard.stop().sortedPickers();
+            size += shard.aggregator.size();
+        }
+        return size;
+    }
+
+    @Override
+    public List<PickerPicks> sortedPickers() {
+        final var stopped = new boolean[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            stopped[i] = shards[i].running;
+            if (stopped[i]) shards[i].stop();
+        }
+
+        final var cursors = new PriorityQueue<Cursor>(shards.length, comparing(Cursor::current, PICKER_ORDER));
+        var total = 0;
+        for (int i = 0; i < shards.length; i++) {
+            final var pickers = stopped[i] ? shards[i].sortedPickers() : shards[i].aggregator.sortedPickers();
+            total += pickers.size();
+            if (!pickers.isEmpty()) cursors.add(new Cursor(pickers));
+        }
+
+        final var merged = new ArrayList<PickerPicks>(total);
+        while (!cursors.isEmpty()) {
+            final var cursor = cursors.remove();
+            merged.add(cursor.current());
+            if (cursor.advance()) cursors.add(cursor);
+        }
+        return merged;
+    }
+
+    private Shard shardOf(Picker picker) {
+        return shards[floorMod(picker.getId().hashCode(), shards.length)];
+    }
+
+    /**
+     * Drops all picks, including those which running shards have not aggregated yet. Every running
+     * shard's thread is stopped and awaited before its aggregator is reset, so that no pick of the
+     * dropped ones reaches the aggregator afterwards.
+     */
+    @Override
+    public void reset() {
+        for (final var shard : shards) {
+            if (shard.running) shard.drop();
+            shard.batches.clear();
+            shard.aggregator.reset();
+            shard.start();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (final var shard : shards) {
+            shard.result.cancel(true);
+            shard.aggregator.close();
+        }
+    }
+
+    private final class Shard {
+        private final BlockingQueue<List<PickEvent>> batches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final PickAggregator aggregator;
+        private Future<List<PickerPicks>> result;
+        private List<PickEvent> pending = new ArrayList<>(BATCH_SIZE);
+        private boolean running;
+
+        private Shard(PickAggregator aggregator) {
+            this.aggregator = aggregator;
+            start();
+        }
+
+        private void start() {
+            pending = new ArrayList<>(BATCH_SIZE);
+            result = executor.submit(this::aggregate);
+            running = true;
+        }
+
+        /** Hands over the pending picks and the end of the picks, after which the shard's thread sorts its pickers. */
+        private Shard stop() {
+            if (!pending.isEmpty()) flush();
+            pending = END_OF_PICKS;
+            flush();
+            running = false;
+            return this;
+        }
+
+        /** Discards the pending and queued picks, and stops the shard's thread without sorting, waiting for it to finish. */
+        private void drop() {
+            pending = new ArrayList<>(BATCH_SIZE);
+            batches.clear();
+            // only this thread hands over batches, so the cleared queue has room for the marker
+            batches.add(DROP_PICKS);
+            running = false;
+            var interrupted = false;
+            while (true) {
+                try {
+                    result.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // the picks of a failed shard are dropped as well
+                    break;
+                }
+            }
+            if (interrupted) currentThread().interrupt();
+        }
+
+        private List<PickerPicks> aggregate() throws InterruptedException {
+            List<PickEvent> batch;
+            while ((batch = batches.take()) != END_OF_PICKS) {
+                if (batch == DROP_PICKS) return List.of();
+                batch.forEach(aggregator);
+            }
+            return aggregator.sortedPickers();
+        }
+
+        /** Hands the pending picks to the shard's thread, unless that thread has already failed. */
+        private void flush() {
+            metrics.shardQueueDepth.record(batches.size());
+            try {
+                while (!batches.offer(pending, 100, MILLISECONDS)) {
+                    if (result.isDone()) break;
+                }
+            } catch (InterruptedException e) {
+                System.err.println(format("Thread[%s]: Interrupted while handing picks to a shard.", currentThread().getName()));
+                currentThread().interrupt();
+            }
+            pending = new ArrayList<>(BATCH_SIZE);
+        }
+
+        private List<PickerPicks> sortedPickers() {
+            try {
+                return result.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException) throw (UncheckedIOException) e.getCause();
+                throw new IllegalStateException("Aggregating a shard of picks failed", e.getCause());
+            } catch (InterruptedException e) {
+                currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a shard of picks", e);
+            }
+        }
+    }
+
+    private static final class Cursor {
+        private final List<PickerPicks> pickers;
+        private int position;
+
+        private Cursor(List<PickerPicks> pickers) {
+            this.pickers = pickers;
+        }
+
+        private PickerPicks current() {
+            return pickers.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < pickers.size();
+        }
+    }
+}
@@ -1,87 +1,426 @@
 package tech.picnic.assignment.impl;
 
-import tech.picnic.assignment.model.PickRequest;
-
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
 import java.time.Duration;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.*;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
+import static java.lang.Math.min;
 import static java.lang.String.format;
+import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
-import static java.lang.Thread.sleep;
-import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
-import static tech.picnic.assignment.impl.Utilities.OBJECT_MAPPER;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 class SourceReader {
 
-    private static final String EMPTY_LINE = "";
+    // keep-alive lines are never part of a batch, so an empty batch can safely mark the end of the stream
+    private static final LineBatch END_OF_STREAM = LineBatch.EMPTY;
+    private static final int QUEUE_CAPACITY = 64;
+    /** The lines a memory-mapped file is sliced into, as it has no producer to size its batches. */
+    private static final int MAPPED_BATCH_SIZE = 256;
 
     private final int maxEvents;
     private final Duration maxTime;
+    private final PickDecoder pickDecoder;
+    private final int parseWorkers;
+    private final ProcessorMetrics metrics;
+    private final ProcessorExecutors executors;
+    private final boolean mapFiles;
+    private final OutputBudget outputBudget;
+
+    SourceReader(int maxEvents, Duration maxTime, PickDecoder pickDecoder) {
+        this(maxEvents, maxTime, pickDecoder, ProcessorConfig.builder().build(), new ProcessorMetrics(), ProcessorExecutors.defaults(),
+                OutputBudget.unreserved());
+    }
 
-    SourceReader(int maxEvents, Duration maxTime) {
+    /**
+     * Creates a reader with the parse workers and file mapping of the config, which stops reading a
+     * window early enough to leave the time reserved by the output budget for sorting and writing
+     * its picks within {@code maxTime}.
+     */
+    SourceReader(int maxEvents, Duration maxTime, PickDecoder pickDecoder, ProcessorConfig config, ProcessorMetrics metrics,
+                 ProcessorExecutors executors, OutputBudget outputBudget) {
         this.maxEvents = maxEvents;
         this.maxTime = maxTime;
+        this.pickDecoder = pickDecoder;
+        this.parseWorkers = config.getParseWorkers();
+        this.metrics = metrics;
+        this.executors = executors;
+        this.mapFiles = config.isMapFiles();
+        this.outputBudget = outputBudget;
+    }
+
+    /** Reads and decodes events from the source, handing each retained pick to the given consumer. */
+    void readLines(InputStream source, Consumer<PickEvent> picks) {
+        readLines(source, picks, 0);
+    }
+
+    /** Reads a window into a consumer which already holds picks, which are to be written along with it. */
+    void readLines(InputStream source, Consumer<PickEvent> picks, int heldPicks) {
+        try (final var session = open(source, new EventBudget(maxEvents))) {
+            session.readWindow(picks, heldPicks);
+        }
     }
 
-    List<PickRequest> readLines(InputStream source) {
-        final var lines = new LinkedList<PickRequest>();
+    /** Reads and decodes events from several sources at once, as if they were one. */
+    void readMergedLines(List<InputStream> sources, Consumer<PickEvent> picks) {
+        readMergedLines(sources, picks, 0);
+    }
 
-        ExecutorService executor = newSingleThreadExecutor();
-        Future<?> future = executor.submit(() -> accumulateLines(source, lines));
+    /** Reads a window of several sources into a consumer which already holds picks. */
+    void readMergedLines(List<InputStream> sources, Consumer<PickEvent> picks, int heldPicks) {
+        try (final var session = new StreamSession(sources, new EventBudget(maxEvents))) {
+            session.readWindow(picks, heldPicks);
+        }
+    }
 
+    /**
+     * Starts reading lines from the source, to be decoded window by window. A regular file of JSON
+     * lines is memory-mapped, if enabled. Any other source is read by a producer in the background,
+     * which detects its {@link DataFormat} and queues batches of lines, or of decoded records.
+     */
+    Session open(InputStream source) {
+        return open(source, EventBudget.unlimited());
+    }
+
+    /**
+     * Starts reading several sources at once, each by its own producer in the background. Their
+     * batches are decoded as one stream, in the order in which they arrive, so {@code maxEvents}
+     * and {@code maxTime} apply to all sources together. The stream ends once every source has.
+     */
+    Session open(List<InputStream> sources) {
+        return new StreamSession(sources, EventBudget.unlimited());
+    }
+
+    /** Starts reading the source, whose producer hands over no more events than the budget allows. */
+    private Session open(InputStream source, EventBudget budget) {
+        final var mappedLines = mapFiles ? MappedLines.of(source) : null;
+        return mappedLines != null && isText(mappedLines) ? new MappedSession(mappedLines) : new StreamSession(List.of(source), budget);
+    }
+
+    private static boolean isText(MappedLines mappedLines) {
         try {
-            future.get(maxTime.getSeconds(), TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-            System.out.println(format("Thread[%s]: Reached timeout with maxTime [%s]", currentThread().getName(), maxTime.toString()));
-            future.cancel(true);
-            System.out.println(format("Thread[%s]: SourceReader thread has been cancelled", currentThread().getName()));
-        } catch (InterruptedException | ExecutionException e) {
-            System.err.println(format("Thread[%s]: Something wrong happened.", currentThread().getName()));
-            e.printStackTrace();
-        } finally {
-            executor.shutdownNow();
-        }
-
-        return lines;
-    }
-
-    private void accumulateLines(InputStream source, List<PickRequest> lines) {
-        try (final var bufferedReader = new BufferedReader(new InputStreamReader(source, UTF_8))) {
-            var counter = 0;
-            while (counter < maxEvents) {
-                // consumes unnecessary CPU when there is a pause in input
-                while (!bufferedReader.ready()) sleep(100);
-
-                final String line = bufferedReader.readLine();
-                if (line != null && !line.equals(EMPTY_LINE)) {
-
-                    var pick = toPickRequest(line);
-                    pick.ifPresent(lines::add);
-                    counter++;
+            return mappedLines.detectFormat().isText();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a source, or several merged into one, keeping its line producers and parse workers, if
+     * any, from one window to the next.
+     */
+    abstract class Session implements AutoCloseable {
+        private final ParallelDecoding decoding = parseWorkers > 1 ? new ParallelDecoding() : null;
+        private boolean exhausted;
+
+        /**
+         * Reads and decodes up to {@code maxEvents} events, or as many as arrive within {@code
+         * maxTime} minus the time reserved for the output, handing each retained pick to the given
+         * consumer. Returns whether the source may hold more events, that is, unless its end was
+         * reached or reading was interrupted.
+         */
+        boolean readWindow(Consumer<PickEvent> consumer) {
+            return readWindow(consumer, 0);
+        }
+
+        /**
+         * Reads a window into a consumer which already holds the given number of picks. Those are
+         * written along with the window, so the time reserved for the output covers them as well.
+         */
+        boolean readWindow(Consumer<PickEvent> consumer, int heldPicks) {
+            if (exhausted) return false;
+
+            final var deadline = nanoTime() + maxTime.toNanos();
+            final var picks = new CountingConsumer(consumer);
+            try {
+                var counter = 0;
+                while (counter < maxEvents) {
+                    // the reserve grows with every retained pick, which pulls the end of reading forward
+                    final var readDeadline = deadline - outputBudget.reserve(heldPicks + picks.count);
+                    final var waitStart = nanoTime();
+                    final var event = new ProcessorEvents.ReadBatch();
+                    event.begin();
+                    final var batch = nextBatch(readDeadline, maxEvents - counter);
+                    event.end();
+                    metrics.read.record(nanoTime() - waitStart);
+                    if (batch != null && event.shouldCommit()) {
+                        event.lines = batch.size();
+                        event.bytes = batch.byteSize();
+                        event.commit();
+                    }
+                    if (batch == null) {
+                        metrics.recordTimedOutWindow();
+                        System.err.println(format("Thread[%s]: Reached timeout with maxTime [%s]", currentThread().getName(), maxTime.toString()));
+                        break;
+                    }
+
+                    counter += batch.size();
+                    metrics.recordLinesRead(batch.size());
+
+                    if (decoding != null) {
+                        decoding.submit(batch, picks);
+                    } else {
+                        aggregate(decode(batch), picks);
+                    }
+                    if (endOfStream()) {
+                        exhausted = true;
+                        break;
+                    }
                 }
+                if (decoding != null) decoding.awaitPending(picks);
+            } catch (InterruptedException e) {
+                System.err.println(format("Thread[%s]: SourceReader has been interrupted while waiting for input.", currentThread().getName()));
+                currentThread().interrupt();
+                exhausted = true;
             }
-        } catch (IOException e) {
-            System.err.println(format("Thread[%s]: Something wrong happened while reading from BufferedReader.", currentThread().getName()));
-            e.printStackTrace();
-        } catch (InterruptedException e) {
-            System.out.println(format("Thread[%s]: InputStream has been closed as application reached timeout.", currentThread().getName()));
+            return !exhausted;
+        }
+
+        /**
+         * Returns up to {@code maxLines} lines, blocking until at least one line is available or the
+         * end of the source is reached. Returns {@code null} once the deadline has passed.
+         */
+        abstract LineBatch nextBatch(long deadline, int maxLines) throws InterruptedException;
+
+        /** Whether the last batch ended the source. */
+        abstract boolean endOfStream();
+
+        @Override
+        public void close() {
+            if (decoding != null) decoding.cancelPending();
         }
     }
 
-    private Optional<PickRequest> toPickRequest(String line) {
+    private final class StreamSession extends Session {
+        private final BlockingQueue<LineBatch> batches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final List<Future<?>> producers = new ArrayList<>();
+        private int openSources;
+        private LineBatch remainder;
+        private boolean endOfStream;
+
+        private StreamSession(List<InputStream> sources, EventBudget budget) {
+            for (final var source : sources) {
+                producers.add(executors.blocking().submit(() -> produceBatches(source, budget, batches)));
+            }
+            openSources = sources.size();
+            endOfStream = sources.isEmpty();
+        }
+
+        /**
+         * Returns a queued batch as the producer sized it, so that the consumer takes over as many
+         * lines per call as the producer gathered. Lines which are already queued are not consumed
+         * after the deadline either. The lines of a queued batch beyond {@code maxLines} are kept for
+         * the next call, or the next window.
+         */
+        @Override
+        LineBatch nextBatch(long deadline, int maxLines) throws InterruptedException {
+            metrics.lineQueueDepth.record(batches.size());
+            final var remaining = deadline - nanoTime();
+            if (remaining <= 0) return null;
+
+            if (openSources == 0) return END_OF_STREAM;
+
+            var batch = remainder;
+            remainder = null;
+            while (batch == null) {
+                final var left = deadline - nanoTime();
+                batch = left > 0 ? batches.poll(left, NANOSECONDS) : null;
+                if (batch == null) return null;
+                // only the last source to end, ends the stream
+                if (batch == END_OF_STREAM && --openSources > 0) batch = null;
+            }
+
+            endOfStream = batch == END_OF_STREAM;
+            if (batch.size() > maxLines) {
+                remainder = batch.skip(maxLines);
+                batch = batch.first(maxLines);
+            }
+            return batch;
+        }
+
+        @Override
+        boolean endOfStream() {
+            return endOfStream;
+        }
+
+        @Override
+        public void close() {
+            producers.forEach(producer -> producer.cancel(true));
+            super.close();
+        }
+    }
+
+    /** Reads a memory-mapped file on the calling thread, as reading it never blocks for long. */
+    private final class MappedSession extends Session {
+        private final MappedLines lines;
+        private boolean endOfStream;
+
+        private MappedSession(MappedLines lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        LineBatch nextBatch(long deadline, int maxLines) {
+            if (nanoTime() - deadline >= 0) return null;
+            try {
+                final var batch = lines.nextBatch(min(MAPPED_BATCH_SIZE, maxLines));
+                endOfStream = !lines.hasRemaining();
+                return batch;
+            } catch (IOException e) {
+                System.err.println(format("Thread[%s]: Something wrong happened while reading from a mapped file.", currentThread().getName()));
+                e.printStackTrace();
+                endOfStream = true;
+                return LineBatch.EMPTY;
+            }
+        }
+
+        @Override
+        boolean endOfStream() {
+            return endOfStream;
+        }
+    }
+
+    private List<PickEvent> decode(LineBatch batch) {
+        final var start = nanoTime();
+        final var event = new ProcessorEvents.Decode();
+        event.begin();
+        final var decoded = new ArrayList<PickEvent>(batch.size());
+        batch.decode(pickDecoder, decoded::add);
+        event.end();
+        metrics.recordPicksParsed(decoded.size());
+        metrics.parse.record(nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.lines = batch.size();
+            event.bytes = batch.byteSize();
+            event.picks = decoded.size();
+            event.rejected = batch.size() - decoded.size();
+            event.commit();
+        }
+        return decoded;
+    }
+
+    private void aggregate(List<PickEvent> decoded, Consumer<PickEvent> picks) {
+        final var start = nanoTime();
+        final var event = new ProcessorEvents.Aggregate();
+        event.begin();
+        decoded.forEach(picks);
+        event.end();
+        metrics.aggregate.record(nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.picks = decoded.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Reads batches from the source until its end, until the budget is used up, or until cancelled.
+     * Reads which could block are made interruptible, so that cancelling the producer frees its
+     * thread even if the source ignores interrupts.
+     */
+    private void produceBatches(InputStream source, EventBudget budget, BlockingQueue<LineBatch> batches) {
+        // the source is deliberately not closed; it is owned by the caller of StreamProcessor#process
         try {
-            return Optional.of(OBJECT_MAPPER.readValue(line, PickRequest.class));
-        } catch (IOException e) {
-            return Optional.empty();
+            try {
+                final var input = new PushbackInputStream(new InterruptibleSource(source, executors.blocking()), DataFormat.HEADER_LENGTH);
+                final var format = detectFormat(input);
+                final var sizer = new BatchSizer();
+                final BinaryRecords.BatchSink sink = batch -> {
+                    batches.put(batch);
+                    sizer.record(batches.size());
+                };
+                if (format.isText()) {
+                    final var lines = new StreamLines(input, sizer, budget);
+                    LineBatch batch;
+                    while ((batch = lines.next()) != null) sink.put(batch);
+                } else {
+                    new BinaryRecords(input, format, pickDecoder, sizer, budget, sink).readAll();
+                }
+            } catch (InterruptedIOException e) {
+                throw new InterruptedException(e.getMessage());
+            } catch (IOException e) {
+                System.err.println(format("Thread[%s]: Something wrong happened while reading from the source.", currentThread().getName()));
+                e.printStackTrace();
+            }
+            batches.put(END_OF_STREAM);
+        } catch (InterruptedException e) {
+            System.err.println(format("Thread[%s]: SourceReader thread has been cancelled", currentThread().getName()));
+        }
+    }
+
+    /** Reads the first bytes of the source to detect its format, and then pushes them back. */
+    private static DataFormat detectFormat(PushbackInputStream source) throws IOException {
+        final var header = new byte[DataFormat.HEADER_LENGTH];
+        var length = 0;
+        final var first = source.read();
+        if (first >= 0) {
+            header[length++] = (byte) first;
+            // only a Smile header takes more than one byte to recognise
+            if (first == ':') length += source.readNBytes(header, length, header.length - length);
         }
+        source.unread(header, 0, length);
+        return DataFormat.detect(header, length);
     }
 
+    /** Counts the picks handed to the consumer within a window. */
+    private static final class CountingConsumer implements Consumer<PickEvent> {
+        private final Consumer<PickEvent> delegate;
+        private long count;
+
+        private CountingConsumer(Consumer<PickEvent> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void accept(PickEvent pick) {
+            count++;
+            delegate.accept(pick);
+        }
+    }
+
+    /**
+     * Decodes batches on the shared parse workers. Decoded batches are handed to the consumer on the
+     * reading thread, in the order in which they were read, so that the consumer needs no
+     * synchronization and picks with equal timestamps keep their arrival order.
+     */
+    private final class ParallelDecoding {
+        private final Queue<Future<List<PickEvent>>> pending = new ArrayDeque<>();
+        private final int maxPending = 2 * parseWorkers;
+
+        private void submit(LineBatch batch, Consumer<PickEvent> picks) throws InterruptedException {
+            pending.add(executors.parsing().submit(() -> decode(batch)));
+            metrics.decodeQueueDepth.record(pending.size());
+
+            while (!pending.isEmpty() && (pending.size() > maxPending || pending.peek().isDone())) {
+                acceptNext(picks);
+            }
+        }
+
+        private void awaitPending(Consumer<PickEvent> picks) throws InterruptedException {
+            while (!pending.isEmpty()) acceptNext(picks);
+        }
+
+        private void acceptNext(Consumer<PickEvent> picks) throws InterruptedException {
+            try {
+                aggregate(pending.remove().get(), picks);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Decoding a batch of events failed", e.getCause());
+            }
+        }
+
+        private void cancelPending() {
+            pending.forEach(batch -> batch.cancel(true));
+            pending.clear();
+        }
+    }
 }
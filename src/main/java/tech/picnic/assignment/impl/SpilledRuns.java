@@ -0,0 +1,117 @@
+package tech.picnic.assignment.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.lang.Thread.currentThread;
+
+/**
+ * Sorted runs of picks in temporary files. Every pick takes a fixed 16 bytes: its picker index,
+ * timestamp and article index. The files are deleted when the runs are closed.
+ */
+final class SpilledRuns implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<Path> files = new ArrayList<>();
+    private final List<Integer> lengths = new ArrayList<>();
+    private final List<DataInputStream> readers = new ArrayList<>();
+
+    /** Writes the given rows of the columns, in the given order, as a new run. */
+    void write(PickColumns columns, int[] rows, int length) throws IOException {
+        final var file = Files.createTempFile("picks-", ".run");
+        files.add(file);
+        try (final var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            for (int i = 0; i < length; i++) {
+                final var row = rows[i];
+                output.writeInt(columns.picker(row));
+                output.writeLong(columns.timestamp(row));
+                output.writeInt(columns.article(row));
+            }
+        }
+        lengths.add(length);
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    PickCursor open(int run) throws IOException {
+        final var reader = new DataInputStream(new BufferedInputStream(Files.newInputStream(files.get(run)), BUFFER_SIZE));
+        readers.add(reader);
+        return new RunCursor(reader, lengths.get(run));
+    }
+
+    @Override
+    public void close() {
+        for (final var reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                System.err.println(format("Thread[%s]: Could not close a spilled run.", currentThread().getName()));
+            }
+        }
+        for (final var file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println(format("Thread[%s]: Could not delete spilled run [%s].", currentThread().getName(), file));
+            }
+        }
+        readers.clear();
+        files.clear();
+        lengths.clear();
+    }
+
+    private static final class RunCursor implements PickCursor {
+        private final DataInputStream reader;
+        private int remaining;
+        private int picker;
+        private long timestamp;
+        private int article;
+
+        private RunCursor(DataInputStream reader, int length) {
+            this.reader = reader;
+            this.remaining = length;
+        }
+
+        @Override
+        public boolean next() {
+            if (remaining == 0) return false;
+            remaining--;
+            try {
+                picker = reader.readInt();
+                timestamp = reader.readLong();
+                article = reader.readInt();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read a spilled run of picks", e);
+            }
+            return true;
+        }
+
+        @Override
+        public int picker() {
+            return picker;
+        }
+
+        @Override
+        public long timestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public int article() {
+            return article;
+        }
+    }
+}
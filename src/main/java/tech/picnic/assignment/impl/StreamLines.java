@@ -0,0 +1,127 @@
+package tech.picnic.assignment.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static java.lang.Math.min;
+
+/**
+ * Splits a stream into lines on its raw bytes, without decoding them to text. Like {@link
+ * java.io.BufferedReader#readLine()}, a line ends at a line feed, a carriage return or both. Empty
+ * lines are skipped. The read buffer is reused, and only grows for lines which do not fit in it.
+ */
+final class StreamLines {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream source;
+    private final BatchSizer sizer;
+    private final EventBudget budget;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int[] starts = new int[1024];
+    private int[] ends = new int[1024];
+    private int lines;
+    /** The first byte which has not been handed over yet. */
+    private int start;
+    /** The first byte of the line which is not complete yet. */
+    private int lineStart;
+    /** The first byte which has not been scanned for line breaks yet. */
+    private int scanned;
+    private int limit;
+    private boolean endOfStream;
+
+    StreamLines(InputStream source, BatchSizer sizer, EventBudget budget) {
+        this.source = source;
+        this.sizer = sizer;
+        this.budget = budget;
+    }
+
+    /**
+     * Blocks until at least one complete line has been read, and keeps reading for as long as the
+     * source has bytes available, the lines fit in the buffer, and the batch is smaller than both
+     * the sizer's target and the remaining budget. Returns the complete lines read so far, as far as
+     * the budget allows, or {@code null} at the end of the stream or of the budget.
+     */
+    LineBatch next() throws IOException {
+        while (true) {
+            scanLines();
+            if (lines > 0 && !canGather()) return takeLines();
+            if (endOfStream || budget.remaining() == 0) return null;
+            fill();
+        }
+    }
+
+    private boolean canGather() throws IOException {
+        return !endOfStream && lines < min(sizer.targetLines(), budget.remaining()) && limit - start < buffer.length && source.available() > 0;
+    }
+
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            for (int line = 0; line < lines; line++) {
+                starts[line] -= start;
+                ends[line] -= start;
+            }
+            limit -= start;
+            lineStart -= start;
+            scanned -= start;
+            start = 0;
+        }
+        if (limit == buffer.length) buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+
+        final var read = source.read(buffer, limit, buffer.length - limit);
+        if (read < 0) endOfStream = true;
+        else limit += read;
+    }
+
+    private void scanLines() {
+        for (; scanned < limit; scanned++) {
+            final var b = buffer[scanned];
+            if (b == '\n' || b == '\r') {
+                if (scanned > lineStart) addLine(lineStart, scanned);
+                lineStart = scanned + 1;
+            }
+        }
+        if (endOfStream && limit > lineStart) {
+            // the last line of the stream has no line break
+            addLine(lineStart, limit);
+            lineStart = limit;
+        }
+        // skipped empty lines need not be kept either
+        if (lines == 0) start = lineStart;
+    }
+
+    /**
+     * Copies the complete lines in the buffer, as far as the budget allows, to a new batch. Returns
+     * {@code null} once the budget is used up. Lines beyond the budget are dropped, as it never
+     * grows again.
+     */
+    private LineBatch takeLines() {
+        final var taken = budget.take(lines);
+        if (taken == 0) return null;
+
+        final var offset = starts[0];
+        final var bytes = Arrays.copyOfRange(buffer, offset, ends[taken - 1]);
+        final var batchStarts = new int[taken];
+        final var batchEnds = new int[taken];
+        for (int line = 0; line < taken; line++) {
+            batchStarts[line] = starts[line] - offset;
+            batchEnds[line] = ends[line] - offset;
+        }
+        final var batch = LineBatch.of(bytes, batchStarts, batchEnds, taken);
+        start = lineStart;
+        lines = 0;
+        return batch;
+    }
+
+    private void addLine(int from, int to) {
+        if (lines == starts.length) {
+            starts = Arrays.copyOf(starts, 2 * lines);
+            ends = Arrays.copyOf(ends, 2 * lines);
+        }
+        starts[lines] = from;
+        ends[lines] = to;
+        lines++;
+    }
+}
@@ -0,0 +1,202 @@
+package tech.picnic.assignment.impl;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static java.lang.Math.addExact;
+import static java.lang.Math.floorDiv;
+import static java.lang.Math.floorMod;
+import static java.lang.Math.multiplyExact;
+
+/**
+ * Converts the ISO-8601 timestamps of the feed to and from nanoseconds since the epoch, so that
+ * they can be stored and compared as primitive values.
+ *
+ * <p>Like jackson-datatype-jsr310, which the processor used to rely on, every timestamp is
+ * normalised to UTC: the offset or zone of the input only serves to determine the instant, and
+ * formatting always yields the {@code ISO_OFFSET_DATE_TIME} representation of that instant in UTC.
+ * Timestamps of the form {@code 2018-12-20T11:50:48[.fraction](Z|+hh:mm)} are handled without
+ * allocating; anything else is left to {@link ZonedDateTime#parse}. Supported are the instants
+ * between the years 1677 and 2262, which is what a {@code long} of nanoseconds can hold.
+ */
+final class TimestampCodec {
+
+    // the zone jackson-datatype-jsr310 adjusts deserialized date-times to
+    private static final ZoneId CONTEXT_ZONE = ZoneId.of("UTC");
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int MAX_OFFSET_HOURS = 18;
+    static final long NOT_PARSED = Long.MIN_VALUE;
+
+    /** The maximum length of a formatted timestamp, e.g. {@code 2018-12-20T11:50:48.123456789Z}. */
+    static final int MAX_FORMATTED_LENGTH = 30;
+
+    private TimestampCodec() {}
+
+    static long parse(String text) {
+        // an instant that happens to equal the sentinel is merely parsed the slow way
+        final var nanos = parseCommonFormat(text);
+        return nanos != NOT_PARSED ? nanos : toEpochNanos(ZonedDateTime.parse(text));
+    }
+
+    static long toEpochNanos(ZonedDateTime timestamp) {
+        try {
+            return addExact(multiplyExact(timestamp.toEpochSecond(), NANOS_PER_SECOND), timestamp.getNano());
+        } catch (ArithmeticException e) {
+            throw new DateTimeException("Timestamp out of range: " + timestamp, e);
+        }
+    }
+
+    static ZonedDateTime toZonedDateTime(long epochNanos) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(0, epochNanos), CONTEXT_ZONE);
+    }
+
+    static String format(long epochNanos) {
+        final var buffer = new char[MAX_FORMATTED_LENGTH];
+        return new String(buffer, 0, format(epochNanos, buffer));
+    }
+
+    /** Writes the timestamp into the buffer, returning the number of characters written. */
+    static int format(long epochNanos, char[] buffer) {
+        final var seconds = floorDiv(epochNanos, NANOS_PER_SECOND);
+        final var nano = (int) floorMod(epochNanos, NANOS_PER_SECOND);
+        final var secondOfDay = (int) floorMod(seconds, SECONDS_PER_DAY);
+
+        // civil-from-days, see http://howardhinnant.github.io/date_algorithms.html
+        final var shiftedDay = floorDiv(seconds, SECONDS_PER_DAY) + 719_468;
+        final var era = floorDiv(shiftedDay, 146_097);
+        final var dayOfEra = (int) (shiftedDay - era * 146_097);
+        final var yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        final var dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final var shiftedMonth = (5 * dayOfYear + 2) / 153;
+        final var day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        final var month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        final var year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        writeDigits(buffer, 0, year, 4);
+        buffer[4] = '-';
+        writeDigits(buffer, 5, month, 2);
+        buffer[7] = '-';
+        writeDigits(buffer, 8, day, 2);
+        buffer[10] = 'T';
+        writeDigits(buffer, 11, secondOfDay / 3600, 2);
+        buffer[13] = ':';
+        writeDigits(buffer, 14, secondOfDay / 60 % 60, 2);
+        buffer[16] = ':';
+        writeDigits(buffer, 17, secondOfDay % 60, 2);
+
+        var length = 19;
+        if (nano > 0) {
+            buffer[length++] = '.';
+            writeDigits(buffer, length, nano, 9);
+            length += 9;
+            while (buffer[length - 1] == '0') length--;
+        }
+        buffer[length++] = 'Z';
+        return length;
+    }
+
+    /** Returns {@link #NOT_PARSED} if the text is not in the common format or not a valid date-time. */
+    static long parseCommonFormat(String text) {
+        final var length = text.length();
+        if (length < 20
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return NOT_PARSED;
+        }
+
+        final var year = readDigits(text, 0, 4);
+        final var month = readDigits(text, 5, 2);
+        final var day = readDigits(text, 8, 2);
+        final var hour = readDigits(text, 11, 2);
+        final var minute = readDigits(text, 14, 2);
+        final var second = readDigits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return NOT_PARSED;
+        }
+
+        var position = 19;
+        var nano = 0;
+        if (text.charAt(position) == '.') {
+            final var fractionStart = ++position;
+            while (position < length && position - fractionStart < 9 && isDigit(text.charAt(position))) {
+                nano = nano * 10 + (text.charAt(position++) - '0');
+            }
+            final var digits = position - fractionStart;
+            if (digits == 0) return NOT_PARSED;
+            for (var i = digits; i < 9; i++) nano *= 10;
+        }
+
+        final int offsetSeconds;
+        if (position == length - 1 && text.charAt(position) == 'Z') {
+            offsetSeconds = 0;
+        } else if (position == length - 6 && text.charAt(position + 3) == ':'
+                && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+            final var offsetHours = readDigits(text, position + 1, 2);
+            final var offsetMinutes = readDigits(text, position + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59
+                    || offsetHours > MAX_OFFSET_HOURS || (offsetHours == MAX_OFFSET_HOURS && offsetMinutes > 0)) {
+                return NOT_PARSED;
+            }
+            final var sign = text.charAt(position) == '-' ? -1 : 1;
+            offsetSeconds = sign * (offsetHours * 3600 + offsetMinutes * 60);
+        } else {
+            return NOT_PARSED;
+        }
+
+        final var seconds = epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second - offsetSeconds;
+        if (seconds < Long.MIN_VALUE / NANOS_PER_SECOND + 1 || seconds > Long.MAX_VALUE / NANOS_PER_SECOND - 1) {
+            return NOT_PARSED;
+        }
+        return seconds * NANOS_PER_SECOND + nano;
+    }
+
+    // days-from-civil, see http://howardhinnant.github.io/date_algorithms.html
+    private static long epochDay(int year, int month, int day) {
+        final var shiftedYear = month <= 2 ? year - 1 : year;
+        final var era = floorDiv(shiftedYear, 400);
+        final var yearOfEra = shiftedYear - era * 400;
+        final var dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final var dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /** Returns {@code -1} if the text does not contain the given number of digits at the given position. */
+    private static int readDigits(String text, int position, int count) {
+        var value = 0;
+        for (var i = position; i < position + count; i++) {
+            final var c = text.charAt(i);
+            if (!isDigit(c)) return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static void writeDigits(char[] buffer, int position, int value, int count) {
+        for (var i = position + count - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
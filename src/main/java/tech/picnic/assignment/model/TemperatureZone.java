@@ -2,8 +2,10 @@ package tech.picnic.assignment.model;
 
 import com.fasterxml.jackson.annotation.JsonValue;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 
 @AllArgsConstructor
+@Getter
 public enum TemperatureZone {
     Ambient("ambient"),
     Chilled("chilled");
@@ -0,0 +1,150 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import tech.picnic.assignment.impl.Aggregation.RetainedPickConsumer;
+import tech.picnic.assignment.impl.PickAggregator.PickerPicks;
+import tech.picnic.assignment.model.Article;
+import tech.picnic.assignment.model.Picker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.time.ZonedDateTime.parse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static tech.picnic.assignment.impl.PickAggregator.BYTES_PER_PICK;
+import static tech.picnic.assignment.model.TemperatureZone.Ambient;
+import static tech.picnic.assignment.model.TemperatureZone.Chilled;
+
+class AggregationSnapshotTest {
+
+    private final PickInterner interner = new PickInterner(1_000, 1_000);
+
+    @Test
+    @DisplayName("should restore the same pickers and picks, including those spilled to disk")
+    void testRoundTrip(@TempDir Path directory) throws IOException {
+        var events = events(20_000);
+        var state = directory.resolve("state.bin");
+        try (var saved = new PickAggregator(ProcessorConfig.builder().memoryBudget(1_000 * BYTES_PER_PICK).build(), interner, PickColumns.onHeap());
+             var restored = new PickAggregator(Ambient, interner);
+             var sharded = new ShardedAggregation(4, () -> new PickAggregator(Ambient, interner))) {
+            events.forEach(saved);
+            AggregationSnapshot.save(saved, state);
+
+            assertThat(AggregationSnapshot.restore(state, restored)).isTrue();
+            assertThat(AggregationSnapshot.restore(state, sharded)).isTrue();
+
+            assertThat(restored.size()).isEqualTo(saved.size());
+            assertThat(sharded.size()).isEqualTo(saved.size());
+
+            var expected = write(saved.sortedPickers());
+            assertThat(write(restored.sortedPickers())).isEqualTo(expected);
+            assertThat(write(sharded.sortedPickers())).isEqualTo(expected);
+        }
+        assertThat(directory.toFile().list()).containsExactly("state.bin");
+    }
+
+    @Test
+    @DisplayName("should merge later picks into restored ones as if all were aggregated at once")
+    void testIncremental(@TempDir Path directory) throws IOException {
+        var events = events(20_000);
+        var state = directory.resolve("state.bin");
+        try (var single = new PickAggregator(Ambient, interner);
+             var sharded = new ShardedAggregation(4, () -> new PickAggregator(Ambient, interner))) {
+            events.forEach(single);
+
+            events.subList(0, 10_000).forEach(sharded);
+            sharded.sortedPickers();
+            AggregationSnapshot.save(sharded, state);
+
+            try (var restored = new ShardedAggregation(4, () -> new PickAggregator(Ambient, interner))) {
+                AggregationSnapshot.restore(state, restored);
+                events.subList(10_000, events.size()).forEach(restored);
+
+                assertThat(write(restored.sortedPickers())).isEqualTo(write(single.sortedPickers()));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("should restore every pick with the picker it was retained with, even if another one has the same ID")
+    void testPickersWithSameId() throws IOException {
+        var john = new Picker("1", "john", parse("2018-02-01T00:00:00Z"));
+        var johnny = new Picker("1", "johnny", parse("2018-03-01T00:00:00Z"));
+        var aggregation = mock(Aggregation.class);
+        doAnswer(invocation -> {
+            RetainedPickConsumer picks = invocation.getArgument(0);
+            picks.accept(john, 1L, "NOODLE");
+            picks.accept(johnny, 2L, "SPRITE");
+            return null;
+        }).when(aggregation).forEachRetained(any());
+        var snapshot = new ByteArrayOutputStream();
+        AggregationSnapshot.write(aggregation, new DataOutputStream(snapshot));
+
+        var restored = mock(Aggregation.class);
+        AggregationSnapshot.read(new DataInputStream(new ByteArrayInputStream(snapshot.toByteArray())), restored);
+
+        var pickers = ArgumentCaptor.forClass(Picker.class);
+        verify(restored, times(2)).acceptRetained(pickers.capture(), anyLong(), any());
+        assertThat(pickers.getAllValues())
+                .extracting(Picker::getName, picker -> picker.getActiveSince().toInstant())
+                .containsExactly(tuple("john", john.getActiveSince().toInstant()), tuple("johnny", johnny.getActiveSince().toInstant()));
+    }
+
+    @Test
+    @DisplayName("should restore nothing when there is no snapshot yet")
+    void testMissing(@TempDir Path directory) throws IOException {
+        try (var aggregation = new PickAggregator(Ambient, interner)) {
+            assertThat(AggregationSnapshot.restore(directory.resolve("state.bin"), aggregation)).isFalse();
+            assertThat(aggregation.sortedPickers()).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("should reject a file which is not a snapshot")
+    void testCorrupt(@TempDir Path directory) throws IOException {
+        var state = Files.writeString(directory.resolve("state.bin"), "{\"picker\": 1}");
+        try (var aggregation = new PickAggregator(Ambient, interner)) {
+            assertThatThrownBy(() -> AggregationSnapshot.restore(state, aggregation)).isInstanceOf(IOException.class);
+        }
+    }
+
+    /** Random picks with plenty of equal timestamps, whose arrival order must be kept. */
+    private static List<PickEvent> events(int count) {
+        var random = new Random(42);
+        var pickers = new ArrayList<Picker>();
+        for (int i = 0; i < 100; i++) {
+            pickers.add(new Picker(String.valueOf(i), i % 10 == 0 ? null : "picker " + i, parse("2018-01-01T00:00:00Z").plusDays(random.nextInt(10))));
+        }
+        var events = new ArrayList<PickEvent>();
+        for (int i = 0; i < count; i++) {
+            var article = new Article(String.valueOf(i % 500), "article " + i % 500, i % 3 == 0 ? Chilled : Ambient);
+            events.add(new PickEvent(pickers.get(random.nextInt(pickers.size())), article, random.nextInt(1_000)));
+        }
+        return events;
+    }
+
+    private static String write(List<PickerPicks> pickers) throws IOException {
+        var sink = new ByteArrayOutputStream();
+        new PickWriter().write(pickers, sink);
+        return sink.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchSizerTest {
+
+    @Test
+    @DisplayName("should grow batches while they pile up, and shrink them while the consumer waits")
+    void testAdapt() {
+        var sizer = new BatchSizer();
+        assertThat(sizer.targetLines()).isEqualTo(BatchSizer.MIN_LINES);
+
+        for (int i = 0; i < 20; i++) sizer.record(10);
+        assertThat(sizer.targetLines()).isEqualTo(BatchSizer.MAX_LINES);
+
+        sizer.record(1);
+        assertThat(sizer.targetLines()).isEqualTo(BatchSizer.MAX_LINES);
+
+        sizer.record(0);
+        assertThat(sizer.targetLines()).isEqualTo(BatchSizer.MAX_LINES / 2);
+        for (int i = 0; i < 20; i++) sizer.record(0);
+        assertThat(sizer.targetLines()).isEqualTo(BatchSizer.MIN_LINES);
+    }
+
+    @Test
+    @DisplayName("should gather the lines of a burst up to the target, and hand over a trickle as it arrives")
+    void testGather() throws IOException {
+        var input = "{\"id\":1}\n".repeat(10_000).getBytes(UTF_8);
+        var sizer = new BatchSizer();
+
+        var burst = new StreamLines(new ByteArrayInputStream(input) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, min(len, 100));
+            }
+        }, sizer, EventBudget.unlimited());
+        // a batch may exceed the target by the lines of a single read
+        assertThat(burst.next().size()).isBetween(BatchSizer.MIN_LINES, BatchSizer.MIN_LINES + 11);
+        sizer.record(5);
+        assertThat(burst.next().size()).isBetween(2 * BatchSizer.MIN_LINES, 2 * BatchSizer.MIN_LINES + 11);
+
+        var trickle = new StreamLines(new ByteArrayInputStream(input) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, min(len, 100));
+            }
+
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        }, sizer, EventBudget.unlimited());
+        var sizes = new ArrayList<Integer>();
+        LineBatch batch;
+        while ((batch = trickle.next()) != null) sizes.add(batch.size());
+        assertThat(sizes).allMatch(size -> size <= 12);
+        assertThat(sizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(10_000);
+    }
+
+    @Test
+    @DisplayName("should hand over no more lines than the budget shared by all readers allows")
+    void testBudget() throws IOException {
+        var input = "{\"id\":1}\n".repeat(10_000).getBytes(UTF_8);
+        var budget = new EventBudget(15);
+        var first = new StreamLines(new ByteArrayInputStream(input), new BatchSizer(), budget);
+        var second = new StreamLines(new ByteArrayInputStream(input), new BatchSizer(), budget);
+
+        assertThat(first.next().size()).isEqualTo(15);
+        assertThat(first.next()).isNull();
+        assertThat(second.next()).isNull();
+    }
+
+    @Test
+    @DisplayName("should hand over only the lines left in the budget after another reader took the rest")
+    void testPartialBudget() throws IOException {
+        var input = "{\"id\":1}\n".repeat(100).getBytes(UTF_8);
+        var budget = new EventBudget(100);
+        var lines = new StreamLines(new ByteArrayInputStream(input), new BatchSizer(), budget);
+        budget.take(90);
+
+        var batch = lines.next();
+        assertThat(batch.size()).isEqualTo(10);
+        assertThat(batch.byteSize()).isEqualTo(80);
+        assertThat(lines.next()).isNull();
+    }
+
+    @Test
+    @DisplayName("should not hold on to the keep-alive lines it skipped")
+    void testKeepAlive() throws IOException {
+        var input = ("\n".repeat(1_000_000) + "{\"id\":1}").getBytes(UTF_8);
+        var lines = new StreamLines(new ByteArrayInputStream(input), new BatchSizer(), EventBudget.unlimited());
+
+        var batch = lines.next();
+
+        assertThat(batch.size()).isEqualTo(1);
+        assertThat(batch.byteSize()).isEqualTo(8);
+        assertThat(lines.next()).isNull();
+    }
+}
@@ -0,0 +1,81 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeadLetterSinkTest {
+
+    @Test
+    @DisplayName("should write every line, with its reason, in the order they were offered")
+    void testWrite() {
+        var out = new ByteArrayOutputStream();
+        var expected = new StringBuilder();
+        try (var sink = new DeadLetterSink(out)) {
+            for (int i = 0; i < 10_000; i++) {
+                var line = ("##{\"id\":" + i + "}##").getBytes(UTF_8);
+                assertThat(sink.offer(Rejection.INCOMPLETE, line, 2, line.length - 4)).isTrue();
+                expected.append("INCOMPLETE\t{\"id\":").append(i).append("}\n");
+                if (i % 1_000 == 0) {
+                    assertThat(sink.offer(Rejection.SYNTAX)).isTrue();
+                    expected.append("SYNTAX\t\n");
+                }
+            }
+        }
+
+        assertThat(out.toString(UTF_8)).isEqualTo(expected.toString());
+    }
+
+    @Test
+    @DisplayName("should copy the line, as the buffer holding it may be reused")
+    void testCopy() {
+        var out = new ByteArrayOutputStream();
+        var line = "{\"id\":1}".getBytes(UTF_8);
+        try (var sink = new DeadLetterSink(out)) {
+            sink.offer(Rejection.UNKNOWN_FIELD, line, 0, line.length);
+            line[1] = '#';
+        }
+
+        assertThat(out.toString(UTF_8)).isEqualTo("UNKNOWN_FIELD\t{\"id\":1}\n");
+    }
+
+    @Test
+    @DisplayName("should keep taking lines, and close the stream, after writing failed")
+    void testWriteFailure() {
+        var closed = new AtomicBoolean();
+        var failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        try (var sink = new DeadLetterSink(failing)) {
+            var line = new byte[100];
+            for (int i = 0; i < 100_000; i++) sink.offer(Rejection.SYNTAX, line, 0, line.length);
+        }
+
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    @DisplayName("should drop every line when discarding")
+    void testDiscarding() {
+        var sink = DeadLetterSink.discarding();
+
+        assertThat(sink.isEnabled()).isFalse();
+        assertThat(sink.offer(Rejection.SYNTAX, new byte[1], 0, 1)).isTrue();
+    }
+}
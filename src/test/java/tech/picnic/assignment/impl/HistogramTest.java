@@ -0,0 +1,42 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistogramTest {
+
+    private final Histogram histogram = new Histogram();
+
+    @Test
+    @DisplayName("should estimate percentiles within a factor of two")
+    void testPercentiles() {
+        for (int value = 1; value <= 1_000; value++) {
+            histogram.record(value);
+        }
+
+        var snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(1_000);
+        assertThat(snapshot.getMean()).isEqualTo(500);
+        assertThat(snapshot.getMax()).isEqualTo(1_000);
+        assertThat(snapshot.getP50()).isBetween(500L, 1_000L);
+        assertThat(snapshot.getP99()).isBetween(990L, 1_000L);
+    }
+
+    @Test
+    @DisplayName("should subtract an earlier snapshot")
+    void testMinus() {
+        histogram.record(0);
+        histogram.record(5);
+        var earlier = histogram.snapshot();
+        histogram.record(100);
+
+        var difference = histogram.snapshot().minus(earlier);
+
+        assertThat(difference.getCount()).isEqualTo(1);
+        assertThat(difference.getSum()).isEqualTo(100);
+        assertThat(difference.getP50()).isEqualTo(100);
+    }
+}
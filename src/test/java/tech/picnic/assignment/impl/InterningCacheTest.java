@@ -0,0 +1,80 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InterningCacheTest {
+
+    private final InterningCache<String, String> cache = new InterningCache<>(2);
+
+    @Test
+    @DisplayName("should return the canonical instance and count hits and misses")
+    void testIntern() {
+        var first = cache.intern("a", key -> new String("A"));
+        var second = cache.intern("a", key -> new String("A"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should evict the least recently used entry")
+    void testEviction() {
+        cache.intern("a", String::toUpperCase);
+        cache.intern("b", String::toUpperCase);
+        cache.intern("a", String::toUpperCase);
+        cache.intern("c", String::toUpperCase);
+        var b = cache.intern("b", key -> "new b");
+        var c = cache.intern("c", key -> "new c");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.evictions()).isEqualTo(2);
+        assertThat(b).isEqualTo("new b");
+        assertThat(c).isEqualTo("C");
+    }
+
+    @Test
+    @DisplayName("should stay within its capacity, and count every access, when shared by several threads")
+    void testConcurrent() throws Exception {
+        var shared = new InterningCache<Integer, String>(1_000);
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var calls = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < 4; thread++) {
+                calls.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        var key = i % 2_000;
+                        assertThat(shared.intern(key, String::valueOf)).isEqualTo(String.valueOf(key));
+                    }
+                }));
+            }
+            for (var call : calls) call.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(shared.size()).isEqualTo(1_000);
+        assertThat(shared.hits() + shared.misses()).isEqualTo(40_000);
+        assertThat(shared.evictions()).isEqualTo(shared.misses() - 1_000);
+    }
+
+    @Test
+    @DisplayName("should replace instances which are no longer current")
+    void testReplaceStale() {
+        cache.intern("a", key -> "old");
+        var replaced = cache.intern("a", value -> value.equals("new"), key -> "new");
+        var current = cache.intern("a", value -> value.equals("new"), key -> "newer");
+
+        assertThat(replaced).isEqualTo("new");
+        assertThat(current).isEqualTo("new");
+        assertThat(cache.misses()).isEqualTo(2);
+        assertThat(cache.hits()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,47 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class OutputBudgetTest {
+
+    @Test
+    @DisplayName("should learn the cost per pick from the windows written")
+    void testAdaptive() {
+        var budget = OutputBudget.adaptive();
+        var initial = budget.reserve(1_000);
+
+        budget.record(10_000, 1_000_000 + 10_000 * 500L);
+
+        assertThat(budget.nanosPerPick()).isEqualTo(500.0);
+        assertThat(budget.reserve(1_000)).isEqualTo(2_250_000).isLessThan(initial);
+        assertThat(budget.reserve(2_000)).isGreaterThan(budget.reserve(1_000));
+
+        budget.record(10_000, 1_000_000 + 10_000 * 900L);
+
+        assertThat(budget.nanosPerPick()).isCloseTo(600.0, within(0.001));
+    }
+
+    @Test
+    @DisplayName("should ignore windows without picks")
+    void testEmptyWindows() {
+        var budget = OutputBudget.adaptive();
+        var initial = budget.nanosPerPick();
+
+        budget.record(0, 5_000_000);
+
+        assertThat(budget.nanosPerPick()).isEqualTo(initial);
+    }
+
+    @Test
+    @DisplayName("should reserve nothing when unreserved")
+    void testUnreserved() {
+        var budget = OutputBudget.unreserved();
+        budget.record(10, 1_000_000_000);
+
+        assertThat(budget.reserve(1_000_000)).isZero();
+    }
+}
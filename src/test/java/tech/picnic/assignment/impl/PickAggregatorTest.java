@@ -0,0 +1,107 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import tech.picnic.assignment.model.Article;
+import tech.picnic.assignment.model.Picker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.time.ZonedDateTime.parse;
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.picnic.assignment.model.TemperatureZone.Ambient;
+import static tech.picnic.assignment.model.TemperatureZone.Chilled;
+
+class PickAggregatorTest {
+
+    private static final Picker john = new Picker("1", "john", parse("2018-02-01T00:00:00Z"));
+    private static final Picker jane = new Picker("2", "jane", parse("2018-02-01T00:00:00Z"));
+    private static final Picker joris = new Picker("3", "joris", parse("2018-01-01T00:00:00Z"));
+
+    private final List<PickEvent> events = randomEvents();
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    @DisplayName("should sort pickers and their picks, keeping the arrival order of equal timestamps")
+    void testSortedPickers(boolean offHeap) {
+        var aggregator = new PickAggregator(ProcessorConfig.builder().build(), new PickInterner(100, 100), offHeap ? PickColumns.offHeap() : PickColumns.onHeap());
+
+        events.forEach(aggregator);
+        var sorted = aggregator.sortedPickers();
+
+        assertThat(sorted).extracting(PickAggregator.PickerPicks::picker).containsExactly(joris, john, jane);
+        for (var picker : sorted) {
+            var expected = events.stream()
+                    .filter(event -> event.getPicker() == picker.picker() && event.getArticle().getTemperatureZone() == Ambient)
+                    .sorted(comparingLong(PickEvent::getTimestamp))
+                    .map(event -> event.getArticle().getName().toUpperCase())
+                    .collect(toList());
+            var actual = new ArrayList<String>();
+            var previous = Long.MIN_VALUE;
+            while (picker.nextPick()) {
+                actual.add(picker.articleName());
+                assertThat(picker.timestamp()).isGreaterThanOrEqualTo(previous);
+                previous = picker.timestamp();
+            }
+
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("should write the same picks when they are spilled to disk")
+    void testSpill() throws IOException {
+        var interner = new PickInterner(100, 100);
+        var inMemory = new PickAggregator(Ambient, interner);
+        events.forEach(inMemory);
+
+        try (var spilling = new PickAggregator(ProcessorConfig.builder().memoryBudget(7_000 * PickAggregator.BYTES_PER_PICK).build(), interner, PickColumns.onHeap())) {
+            events.forEach(spilling);
+
+            assertThat(write(spilling.sortedPickers())).isEqualTo(write(inMemory.sortedPickers()));
+        }
+    }
+
+    @Test
+    @DisplayName("should start every window with an empty article dictionary")
+    void testReset() throws IOException {
+        var interner = new PickInterner(100, 100);
+        var aggregator = new PickAggregator(Ambient, interner);
+        events.subList(0, 1_000).forEach(aggregator);
+        aggregator.sortedPickers();
+
+        aggregator.reset();
+        var window = events.subList(1_000, 1_100);
+        window.forEach(aggregator);
+
+        var expected = new PickAggregator(Ambient, interner);
+        window.forEach(expected);
+        assertThat(aggregator.articleCount()).isEqualTo(expected.articleCount()).isLessThanOrEqualTo(100);
+        assertThat(write(aggregator.sortedPickers())).isEqualTo(write(expected.sortedPickers()));
+    }
+
+    private static List<PickEvent> randomEvents() {
+        var random = new Random(42);
+        var pickers = List.of(john, jane, joris);
+        var events = new ArrayList<PickEvent>();
+        for (int i = 0; i < 50_000; i++) {
+            var article = new Article(String.valueOf(i), "article " + i, i % 10 == 0 ? Chilled : Ambient);
+            events.add(new PickEvent(pickers.get(random.nextInt(3)), article, random.nextInt(1_000)));
+        }
+        return events;
+    }
+
+    private static String write(List<PickAggregator.PickerPicks> pickers) throws IOException {
+        var sink = new ByteArrayOutputStream();
+        new PickWriter().write(pickers, sink);
+        return sink.toString();
+    }
+}
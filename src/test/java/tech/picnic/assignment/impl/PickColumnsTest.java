@@ -0,0 +1,29 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PickColumnsTest {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    @DisplayName("should keep every row when growing past a chunk")
+    void testAppend(boolean offHeap) {
+        var columns = offHeap ? PickColumns.offHeap() : PickColumns.onHeap();
+        var rows = 2 * PickColumns.CHUNK_SIZE + 1;
+
+        for (int row = 0; row < rows; row++) {
+            columns.append(Long.MIN_VALUE + row, row % 7, -row);
+        }
+
+        assertThat(columns.size()).isEqualTo(rows);
+        for (int row = 0; row < rows; row++) {
+            assertThat(columns.timestamp(row)).isEqualTo(Long.MIN_VALUE + row);
+            assertThat(columns.picker(row)).isEqualTo(row % 7);
+            assertThat(columns.article(row)).isEqualTo(-row);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package tech.picnic.assignment.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import tech.picnic.assignment.model.PickRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.picnic.assignment.model.TemperatureZone.Ambient;
+import static tech.picnic.assignment.model.TemperatureZone.Chilled;
+
+class PickDecoderTest {
+
+    private static final String ambientPick = "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"id\":\"2344\",\"picker\":{\"id\":\"14\",\"name\":\"Joris\",\"active_since\":\"2018-09-20T08:20:00Z\"}," +
+            "\"article\":{\"id\":\"13473\",\"name\":\"ACME Bananas\",\"temperature_zone\":\"ambient\"},\"quantity\":2}";
+
+    /** Binds through generic databinding, independently of the decoder. */
+    private static final ObjectMapper genericMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final PickDecoder pickDecoder = new PickDecoder(Ambient, new PickInterner(100, 100));
+
+    @Test
+    @DisplayName("should decode the same pick as the object mapper")
+    void testDecodeAmbient() throws IOException {
+        assertThat(pickDecoder.decode(ambientPick)).contains(PickEvent.of(genericMapper.readValue(ambientPick, PickRequest.class)));
+    }
+
+    @Test
+    @DisplayName("should normalise timestamps like the object mapper")
+    void testDecodeOffsetTimestamps() throws IOException {
+        var line = ambientPick.replace("2018-12-20T11:50:48Z", "2018-12-20T12:50:48.250+01:00");
+
+        var pick = pickDecoder.decode(line);
+
+        assertThat(pick).contains(PickEvent.of(genericMapper.readValue(line, PickRequest.class)));
+        assertThat(TimestampCodec.format(pick.get().getTimestamp())).isEqualTo("2018-12-20T11:50:48.25Z");
+    }
+
+    @Test
+    @DisplayName("should return canonical pickers and articles")
+    void testInterning() {
+        var first = pickDecoder.decode(ambientPick).get();
+        var second = pickDecoder.decode(ambientPick.replace("2344", "2345")).get();
+        var renamed = pickDecoder.decode(ambientPick.replace("ACME Bananas", "ACME Plantains")).get();
+
+        assertThat(second.getPicker()).isSameAs(first.getPicker());
+        assertThat(second.getArticle()).isSameAs(first.getArticle());
+        assertThat(renamed.getArticle().getName()).isEqualTo("ACME Plantains");
+    }
+
+    @Test
+    @DisplayName("should replace a canonical picker whose name or activity start has changed")
+    void testInterningChangedPicker() {
+        var first = pickDecoder.decode(ambientPick).get();
+        var renamed = pickDecoder.decode(ambientPick.replace("Joris", "Joris B.")).get();
+        var restarted = pickDecoder.decode(ambientPick.replace("2018-09-20T08:20:00Z", "2018-09-21T08:20:00Z")).get();
+
+        assertThat(renamed.getPicker().getName()).isEqualTo("Joris B.");
+        assertThat(restarted.getPicker().getName()).isEqualTo("Joris");
+        assertThat(TimestampCodec.toEpochNanos(restarted.getPicker().getActiveSince())).isEqualTo(TimestampCodec.parse("2018-09-21T08:20:00Z"));
+        assertThat(pickDecoder.decode(ambientPick).get().getPicker()).isNotSameAs(first.getPicker()).isEqualTo(first.getPicker());
+    }
+
+    @Test
+    @DisplayName("should reject a malformed activity start of a picker which was seen before")
+    void testRejectMalformedActiveSinceOfKnownPicker() {
+        var metrics = new ProcessorMetrics();
+        var decoder = new PickDecoder(ProcessorConfig.builder().build(), new PickInterner(100, 100), metrics, DeadLetterSink.discarding());
+        decoder.decode(ambientPick).get();
+
+        assertThat(decoder.decode(ambientPick.replace("2018-09-20T08:20:00Z", "2018-09-20 08:20"))).isEmpty();
+        assertThat(metrics.getMalformedLinesByReason()).containsEntry(Rejection.INVALID_TIMESTAMP.name(), 1L);
+    }
+
+    @Test
+    @DisplayName("should reject picks of other temperature zones")
+    void testRejectChilled() {
+        assertThat(pickDecoder.decode(ambientPick.replace("ambient", "chilled"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should retain the picks of the filter's zones and pickers only")
+    void testFilter() {
+        var filter = PickFilter.builder().temperatureZones(Set.of(Ambient, Chilled)).deniedPickers(Set.of("15")).build();
+        var metrics = new ProcessorMetrics();
+        var decoder = new PickDecoder(ProcessorConfig.builder().pickFilter(filter).build(), new PickInterner(100, 100), metrics, DeadLetterSink.discarding());
+        var chilled = ambientPick.replace("ambient", "chilled").getBytes(UTF_8);
+        var denied = ambientPick.replace("\"14\"", "\"15\"").getBytes(UTF_8);
+        // the prefilter leaves an escaped picker id to the parser, which drops it all the same
+        var escaped = ambientPick.replace("\"14\"", "\"\\u0031\\u0035\"").getBytes(UTF_8);
+
+        assertThat(decoder.decode(chilled, 0, chilled.length)).get().extracting(pick -> pick.getArticle().getTemperatureZone()).isEqualTo(Chilled);
+        assertThat(decoder.decode(denied, 0, denied.length)).isEmpty();
+        assertThat(decoder.decode(escaped, 0, escaped.length)).isEmpty();
+        assertThat(metrics.getFilteredPicks()).isEqualTo(2);
+        assertThat(metrics.getMalformedLines()).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{this is a malformed pick event}",
+            "[]",
+            "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"id\":\"2344\",\"article\":{\"id\":\"13473\",\"name\":\"ACME Bananas\",\"temperature_zone\":\"ambient\"}}",
+            "{\"timestamp\":\"yesterday\",\"id\":\"2344\",\"picker\":{\"id\":\"14\",\"name\":\"Joris\",\"active_since\":\"2018-09-20T08:20:00Z\"},\"article\":{\"id\":\"13473\",\"name\":\"ACME Bananas\",\"temperature_zone\":\"ambient\"}}",
+            "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"unknown\":1,\"picker\":{\"id\":\"14\",\"name\":\"Joris\",\"active_since\":\"2018-09-20T08:20:00Z\"},\"article\":{\"id\":\"13473\",\"name\":\"ACME Bananas\",\"temperature_zone\":\"ambient\"}}",
+            "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"picker\":{\"id\":\"14\",\"name\":\"Joris\",\"active_since\":\"2018-09-20T08:20:00Z\"},\"article\":{\"id\":\"13473\",\"name\":\"ACME Bananas\",\"temperature_zone\":\"frozen\"}}",
+            "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"picker\":{\"id\":\"14\",\"name\":\"Joris\",\"active_since\":\"2018-09-20T08:20:00Z\"},\"article\":{\"id\":\"13473\",\"name\":\"ACME Bananas\",\"temperature_zone\":\"ambient\"},\"quantity\":\"two\"}"
+    })
+    @DisplayName("should reject malformed picks")
+    void testRejectMalformed(String line) {
+        assertThat(pickDecoder.decode(line)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "\"a pick\"                          | NOT_AN_OBJECT",
+            "{\"id\":\"2344\"                    | SYNTAX",
+            "{\"id\":\"2344\",\"unknown\":1}     | UNKNOWN_FIELD",
+            "{\"id\":{\"nested\":1}}             | INVALID_VALUE",
+            "{\"quantity\":\"2147483648\"}       | INVALID_VALUE",
+            "{\"picker\":[]}                     | INVALID_VALUE",
+            "{\"picker\":{\"nickname\":\"J\"}}   | UNKNOWN_FIELD",
+            "{\"id\":\"2344\",\"quantity\":\"-7\"} | INCOMPLETE"
+    })
+    @DisplayName("should tell why a malformed line is rejected, and write it to the dead letters")
+    void testRejectionReasons(String line, Rejection reason) {
+        var metrics = new ProcessorMetrics();
+        var deadLetters = new ByteArrayOutputStream();
+        try (var sink = new DeadLetterSink(deadLetters)) {
+            var decoder = new PickDecoder(ProcessorConfig.builder().build(), new PickInterner(100, 100), metrics, sink);
+            assertThat(decoder.decode(line)).isEmpty();
+        }
+
+        assertThat(metrics.getMalformedLines()).isEqualTo(1);
+        assertThat(metrics.getMalformedLinesByReason()).containsEntry(reason.name(), 1L);
+        assertThat(deadLetters.toString(UTF_8)).isEqualTo(reason + "\t" + line + "\n");
+    }
+
+    @Test
+    @DisplayName("should reject bad timestamps, and filtered picks, for the right reason")
+    void testRejectionReasonsOfPicks() {
+        var metrics = new ProcessorMetrics();
+        var decoder = new PickDecoder(ProcessorConfig.builder().build(), new PickInterner(100, 100), metrics, DeadLetterSink.discarding());
+
+        assertThat(decoder.decode(ambientPick.replace("2018-12-20T11:50:48Z", "yesterday"))).isEmpty();
+        assertThat(decoder.decode(ambientPick.replace("\"name\":\"Joris\",", "\"name\":{},"))).isEmpty();
+        assertThat(decoder.decode(ambientPick.replace("ambient", "chilled"))).isEmpty();
+
+        assertThat(metrics.getMalformedLinesByReason())
+                .containsEntry(Rejection.INVALID_TIMESTAMP.name(), 1L)
+                .containsEntry(Rejection.INVALID_VALUE.name(), 1L)
+                .doesNotContainKey(Rejection.FILTERED.name());
+        assertThat(metrics.getFilteredPicks()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,183 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import tech.picnic.assignment.impl.PickPrefilter.Verdict;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.picnic.assignment.model.TemperatureZone.Ambient;
+
+class PickPrefilterTest {
+
+    private static final String ambientPick = "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"id\":\"2344\",\"picker\":{\"id\":\"14\",\"name\":\"Joris\",\"active_since\":\"2018-09-20T08:20:00Z\"}," +
+            "\"article\":{\"id\":\"13473\",\"name\":\"ACME Bananas\",\"temperature_zone\":\"ambient\"},\"quantity\":2}";
+
+    private static final PickFilter filter = PickFilter.builder().temperatureZones(Set.of(Ambient)).allowedPickers(Set.of("14", "15")).build();
+
+    private final PickPrefilter prefilter = new PickPrefilter(filter);
+    private final PickDecoder decoder = decoder(new ProcessorMetrics(), DeadLetterSink.discarding());
+
+    @Test
+    @DisplayName("should reject other temperature zones, and pickers which are not allowed, without parsing")
+    void testReject() {
+        assertThat(test(ambientPick)).isEqualTo(Verdict.PARSE);
+        assertThat(test(ambientPick.replace("ambient", "chilled"))).isEqualTo(Verdict.FILTERED);
+        assertThat(test(ambientPick.replace("\"14\"", "\"16\""))).isEqualTo(Verdict.FILTERED);
+        assertThat(test(ambientPick.replace(",\"temperature_zone\":\"ambient\"", ""))).isEqualTo(Verdict.INCOMPLETE);
+        assertThat(test("{\"article\":{\"temperature_zone\":[]}}")).isEqualTo(Verdict.INVALID_VALUE);
+        assertThat(test("[" + ambientPick + "]")).isEqualTo(Verdict.NOT_AN_OBJECT);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"unknown\":1,\"article\":{\"temperature_zone\":\"chilled\"}}",
+            "{\"quantity\":\"two\",\"article\":{\"temperature_zone\":\"chilled\"}}",
+            "{\"article\":{\"name\":{},\"temperature_zone\":\"chilled\"}}"
+    })
+    @DisplayName("should leave a malformed line to the decoder, rejecting it for the same reason on either path")
+    void testMalformed(String line) {
+        assertThat(test(line)).isEqualTo(Verdict.PARSE);
+        assertSameRejection(line);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{this is a malformed pick event}",
+            "{\"id\":\"2344\" \"picker\":{\"id\":\"16\"},\"article\":{\"temperature_zone\":\"chilled\"}}",
+            "{\"quantity\":01,\"article\":{\"temperature_zone\":\"chilled\"}}",
+            "{\"id\":\"\u0001\",\"article\":{\"temperature_zone\":\"chilled\"}}",
+            "{\"article\":{\"name\":\"ACME\",}}",
+            "{\"unknown\":1,\"article\":{\"temperature_zone\":\"chil",
+            "{\"article\":{\"temperature_zone\":\"chilled\"},\"quantity\":tru}",
+            "[1,2"
+    })
+    @DisplayName("should reject a line which is not well-formed for its syntax, as the decoder would, whatever else is wrong with it")
+    void testSyntax(String line) {
+        assertThat(test(line)).isEqualTo(Verdict.SYNTAX);
+        assertSameRejection(line);
+    }
+
+    @Test
+    @DisplayName("should leave a line which is not UTF-8, or which Jackson may take for another encoding, to the decoder")
+    void testEncoding() {
+        var notUtf8 = "{\"id\":\"\u00ff\",\"article\":{\"temperature_zone\":\"chil".getBytes(ISO_8859_1);
+        var bom = ("\ufeff" + ambientPick.replace("ambient", "chilled")).getBytes(UTF_8);
+        var zero = ("{\u0000" + ambientPick).getBytes(UTF_8);
+
+        assertThat(prefilter.test(notUtf8, 0, notUtf8.length)).isEqualTo(Verdict.PARSE);
+        assertThat(prefilter.test(bom, 0, bom.length)).isEqualTo(Verdict.PARSE);
+        assertThat(prefilter.test(zero, 0, zero.length)).isEqualTo(Verdict.PARSE);
+    }
+
+    @Test
+    @DisplayName("should reject a flood of syntax errors without parsing a single line")
+    void testSyntaxFlood() {
+        var lines = new ArrayList<String>();
+        lines.add("{this is a malformed pick event}");
+        for (int length = 1; length < ambientPick.length(); length++) {
+            lines.add(ambientPick.substring(0, length));
+        }
+        var metrics = new ProcessorMetrics();
+        var decoder = decoder(metrics, DeadLetterSink.discarding());
+
+        for (var line : lines) {
+            // the verdict of the prefilter is final, so Jackson never gets to throw
+            assertThat(test(line)).as(line).isEqualTo(Verdict.SYNTAX);
+            var bytes = line.getBytes(UTF_8);
+            assertThat(decoder.decode(bytes, 0, bytes.length)).isEmpty();
+            assertThat(rejection(line)).as(line).isEqualTo(Rejection.SYNTAX);
+        }
+        assertThat(metrics.getMalformedLinesByReason()).containsEntry(Rejection.SYNTAX.name(), (long) lines.size());
+    }
+
+    /** Asserts that the decoder rejects the line for the same reason, and hands over the same dead letter, whether it parses bytes or text. */
+    private static void assertSameRejection(String line) {
+        var bytes = line.getBytes(UTF_8);
+        var prefiltered = new ProcessorMetrics();
+        var prefilteredLetters = new ByteArrayOutputStream();
+        var parsed = new ProcessorMetrics();
+        var parsedLetters = new ByteArrayOutputStream();
+        try (var prefilteredSink = new DeadLetterSink(prefilteredLetters); var parsedSink = new DeadLetterSink(parsedLetters)) {
+            assertThat(decoder(prefiltered, prefilteredSink).decode(bytes, 0, bytes.length)).isEmpty();
+            assertThat(decoder(parsed, parsedSink).decode(line)).isEmpty();
+        }
+
+        assertThat(prefiltered.getFilteredPicks()).isZero();
+        assertThat(prefiltered.getMalformedLines()).isEqualTo(1);
+        assertThat(prefiltered.getMalformedLinesByReason()).isEqualTo(parsed.getMalformedLinesByReason());
+        assertThat(prefilteredLetters.toString(UTF_8)).isEqualTo(parsedLetters.toString(UTF_8)).endsWith("\t" + line + "\n");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"picker\":{\"id\":14,\"active_since\":\"2018-09-20T08:20:00Z\"},\"article\":{\"name\":\"ACME Bananas\",\"temperature_zone\" : \"ambient\"}}",
+            "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"picker\":{\"id\":\"14\",\"active_since\":\"2018-09-20T08:20:00Z\"},\"article\":{\"name\":\"ACME Bananas\",\"temperature_zone\":\"\\u0061mbient\"}}",
+            "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"picker\":{\"id\":\"14\",\"active_since\":\"2018-09-20T08:20:00Z\"},\"article\":{\"name\":\"ACME Bananas\",\"temperature\\u005fzone\":\"ambient\"}}",
+            "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"picker\":{\"id\":\"14\",\"active_since\":\"2018-09-20T08:20:00Z\"},\"article\":{\"name\":\"ACME Bananas\",\"temperature_zone\":\"ambient\"}} \"temperature_zone\":\"chilled\""
+    })
+    @DisplayName("should pass every line which the decoder retains")
+    void testRetained(String line) {
+        assertThat(decoder.decode(line)).isPresent();
+        assertThat(test(line)).isEqualTo(Verdict.PARSE);
+    }
+
+    @Test
+    @DisplayName("should reject a line only for the reason the decoder would, however it is mangled")
+    void testExact() {
+        var random = new Random(42);
+        var fragments = List.of("\"", "\\", "{", "}", "[", "]", ":", ",", " ", "14", "16", "ambient", "chilled", "\"temperature_zone\":\"ambient\",", "\u00e9");
+        var retained = 0;
+        var rejected = 0;
+        for (int i = 0; i < 20_000; i++) {
+            var line = new StringBuilder(ambientPick);
+            for (int edit = random.nextInt(3); edit >= 0; edit--) {
+                var at = random.nextInt(line.length());
+                if (random.nextBoolean()) line.deleteCharAt(at);
+                else line.insert(at, fragments.get(random.nextInt(fragments.size())));
+            }
+
+            var text = line.toString();
+            var verdict = test(text);
+            if (decoder.decode(text).isPresent()) {
+                retained++;
+                assertThat(verdict).as(text).isEqualTo(Verdict.PARSE);
+            } else if (verdict != Verdict.PARSE) {
+                rejected++;
+                assertThat(rejection(text)).as(text).isEqualTo(verdict.rejection);
+            }
+        }
+        assertThat(retained).isGreaterThan(1_000);
+        assertThat(rejected).isGreaterThan(500);
+    }
+
+    /** Returns why the decoder rejects the line when it parses it. */
+    private static Rejection rejection(String line) {
+        var metrics = new ProcessorMetrics();
+        decoder(metrics, DeadLetterSink.discarding()).decode(line);
+        if (metrics.getFilteredPicks() > 0) return Rejection.FILTERED;
+        return metrics.getMalformedLinesByReason().entrySet().stream()
+                .filter(reason -> reason.getValue() > 0)
+                .map(reason -> Rejection.valueOf(reason.getKey()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static PickDecoder decoder(ProcessorMetrics metrics, DeadLetterSink deadLetters) {
+        return new PickDecoder(ProcessorConfig.builder().pickFilter(filter).build(), new PickInterner(100, 100), metrics, deadLetters);
+    }
+
+    private Verdict test(String line) {
+        var bytes = ("##" + line + "##").getBytes(UTF_8);
+        return prefilter.test(bytes, 2, bytes.length - 4);
+    }
+}
@@ -0,0 +1,73 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tech.picnic.assignment.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static java.time.ZonedDateTime.parse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.picnic.assignment.impl.Utilities.OBJECT_MAPPER;
+import static tech.picnic.assignment.model.TemperatureZone.Ambient;
+
+class PickWriterTest {
+
+    private static final Picker john = new Picker("1", "john", parse("2018-02-01T00:00:00Z"));
+    private static final Picker jane = new Picker("2", null, parse("2018-01-01T10:00:00.5+01:00"));
+
+    private static final Article noodle = new Article("1", "noodle", Ambient);
+    private static final Article sprite = new Article("2", "sprîte \"light\"", Ambient);
+
+    private final PickWriter pickWriter = new PickWriter();
+
+    @Test
+    @DisplayName("should write the same bytes as the object mapper")
+    void testSameOutputAsObjectMapper() throws IOException {
+        var aggregator = new PickAggregator(Ambient, new PickInterner(100, 100));
+        aggregator.accept(PickEvent.of(new PickRequest("1", parse("2019-06-01T02:00:00Z"), john, noodle, 1)));
+        aggregator.accept(PickEvent.of(new PickRequest("2", parse("2019-06-01T01:00:00.123Z"), john, sprite, 1)));
+        aggregator.accept(PickEvent.of(new PickRequest("3", parse("2019-06-01T03:00:00+02:00"), jane, noodle, 1)));
+
+        var expected = List.of(
+                PickerWithPicks.builder()
+                        .name(null)
+                        .activeSince(utc(jane.getActiveSince()))
+                        .picks(List.of(pickResponse("NOODLE", "2019-06-01T03:00:00+02:00")))
+                        .build(),
+                PickerWithPicks.builder()
+                        .name("john")
+                        .activeSince(utc(john.getActiveSince()))
+                        .picks(List.of(
+                                pickResponse("SPRÎTE \"LIGHT\"", "2019-06-01T01:00:00.123Z"),
+                                pickResponse("NOODLE", "2019-06-01T02:00:00Z")))
+                        .build());
+
+        var sink = new ByteArrayOutputStream();
+        pickWriter.write(aggregator.sortedPickers(), sink);
+
+        assertThat(sink.toByteArray()).isEqualTo(OBJECT_MAPPER.writeValueAsBytes(expected));
+    }
+
+    @Test
+    @DisplayName("should write an empty array when there are no pickers")
+    void testEmpty() throws IOException {
+        var sink = new ByteArrayOutputStream();
+        pickWriter.write(List.of(), sink);
+
+        assertThat(sink.toByteArray()).isEqualTo(OBJECT_MAPPER.writeValueAsBytes(List.of()));
+    }
+
+    private static PickResponse pickResponse(String name, String timestamp) {
+        return PickResponse.builder().name(name).timestamp(utc(parse(timestamp))).build();
+    }
+
+    /** Timestamps are normalised to UTC, just like the object mapper does when it reads them. */
+    private static ZonedDateTime utc(ZonedDateTime timestamp) {
+        return timestamp.withZoneSameInstant(ZoneOffset.UTC);
+    }
+}
@@ -1,29 +1,45 @@
 package tech.picnic.assignment.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.json.JSONException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 import tech.picnic.assignment.api.EventProcessorFactory;
 import tech.picnic.assignment.api.StreamProcessor;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
 import java.util.ServiceLoader;
 import java.util.stream.Stream;
 
 import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.params.provider.Arguments.of;
+import static tech.picnic.assignment.impl.Utilities.OBJECT_MAPPER;
 
 final class PickingEventProcessorFactoryTest {
     static Stream<Arguments> processingTestCaseInputProvider() {
@@ -57,6 +73,122 @@ final class PickingEventProcessorFactoryTest {
         }
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2})
+    void testContinuous(int aggregationShards) throws IOException, JSONException {
+        ProcessorConfig config = ProcessorConfig.builder().continuous(true).aggregationShards(aggregationShards).build();
+        try (EventProcessorFactory factory = new PickingEventProcessorFactory(config);
+             StreamProcessor processor = factory.createProcessor(2, ofSeconds(30));
+             InputStream source = getClass().getResourceAsStream("malformed-pick-input.json-stream");
+             ByteArrayOutputStream sink = new ByteArrayOutputStream()) {
+            processor.process(source, sink);
+
+            String[] windows = new String(sink.toByteArray(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(2, windows.length);
+            JSONAssert.assertEquals(
+                    "[{\"picker_name\":\"Jan\",\"active_since\":\"2018-11-14T08:20:15Z\",\"picks\":[{\"article_name\":\"ACME BANANAS\",\"timestamp\":\"2018-12-20T11:50:49Z\"}]}]",
+                    windows[0], JSONCompareMode.STRICT);
+            JSONAssert.assertEquals(
+                    "[{\"picker_name\":\"Joris\",\"active_since\":\"2018-09-20T08:20:00Z\",\"picks\":[{\"article_name\":\"ACME APPLES\",\"timestamp\":\"2018-12-20T11:51:00Z\"}]}]",
+                    windows[1], JSONCompareMode.STRICT);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(DataFormat.class)
+    void testDataFormats(DataFormat format) throws IOException, JSONException {
+        ProcessorConfig config = ProcessorConfig.builder().outputFormat(format).build();
+        try (EventProcessorFactory factory = new PickingEventProcessorFactory(config);
+             StreamProcessor processor = factory.createProcessor(100, ofSeconds(1));
+             InputStream source = new ByteArrayInputStream(encode("happy-path-input.json-stream", format));
+             ByteArrayOutputStream sink = new ByteArrayOutputStream()) {
+            processor.process(source, sink);
+
+            String actualOutput = OBJECT_MAPPER.writeValueAsString(new ObjectMapper(format.factory().copy()).readTree(sink.toByteArray()));
+            JSONAssert.assertEquals(loadResource("happy-path-output.json"), actualOutput, JSONCompareMode.STRICT);
+        }
+    }
+
+    @Test
+    void testMultipleSources() throws IOException, JSONException {
+        String[] lines = loadResource("happy-path-input.json-stream").split("\n");
+        StringBuilder even = new StringBuilder();
+        StringBuilder odd = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            (i % 2 == 0 ? even : odd).append(lines[i]).append('\n');
+        }
+
+        try (EventProcessorFactory factory = new PickingEventProcessorFactory();
+             PickingStreamProcessor processor = (PickingStreamProcessor) factory.createProcessor(100, ofSeconds(30));
+             ByteArrayOutputStream sink = new ByteArrayOutputStream()) {
+            processor.process(List.of(
+                    new ByteArrayInputStream(even.toString().getBytes(StandardCharsets.UTF_8)),
+                    new ByteArrayInputStream(odd.toString().getBytes(StandardCharsets.UTF_8))), sink);
+
+            String actualOutput = new String(sink.toByteArray(), StandardCharsets.UTF_8);
+            JSONAssert.assertEquals(loadResource("happy-path-output.json"), actualOutput, JSONCompareMode.STRICT);
+        }
+    }
+
+    @Test
+    void testMetrics() throws IOException, JMException {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName metricsName;
+        try (PickingEventProcessorFactory factory = new PickingEventProcessorFactory();
+             StreamProcessor processor = factory.createProcessor(100, ofSeconds(1));
+             InputStream source = getClass().getResourceAsStream("malformed-pick-input.json-stream")) {
+            processor.process(source, new ByteArrayOutputStream());
+
+            metricsName = factory.metricsName();
+            assertEquals(3L, server.getAttribute(metricsName, "LinesRead"));
+            assertEquals(2L, server.getAttribute(metricsName, "PicksParsed"));
+            assertEquals(1L, server.getAttribute(metricsName, "MalformedLines"));
+            assertEquals(0L, server.getAttribute(metricsName, "FilteredPicks"));
+            assertEquals(2L, server.getAttribute(metricsName, "RetainedPicks"));
+            assertEquals(1L, ((CompositeData) server.getAttribute(metricsName, "SerializeNanos")).get("count"));
+        }
+        assertFalse(server.isRegistered(metricsName), "The metrics are still registered after closing the factory");
+    }
+
+    @Test
+    void testDeadLetters(@TempDir Path directory) throws IOException, JSONException {
+        Path deadLetters = directory.resolve("dead-letters.txt");
+        ProcessorConfig config = ProcessorConfig.builder().deadLetterFile(deadLetters).build();
+        try (EventProcessorFactory factory = new PickingEventProcessorFactory(config);
+             StreamProcessor processor = factory.createProcessor(100, ofSeconds(1));
+             InputStream source = getClass().getResourceAsStream("malformed-pick-input.json-stream");
+             ByteArrayOutputStream sink = new ByteArrayOutputStream()) {
+            processor.process(source, sink);
+
+            String actualOutput = new String(sink.toByteArray(), StandardCharsets.UTF_8);
+            JSONAssert.assertEquals(loadResource("malformed-pick-output.json"), actualOutput, JSONCompareMode.STRICT);
+        }
+        assertEquals("SYNTAX\t{this is a malformed pick event}\n", Files.readString(deadLetters));
+    }
+
+    @Test
+    void testStateFile(@TempDir Path directory) throws IOException, JSONException {
+        ProcessorConfig config = ProcessorConfig.builder().stateFile(directory.resolve("state.bin")).build();
+        String[] lines = loadResource("happy-path-with-sorted-input.json-stream").split("(?<=\n)");
+        String first = String.join("", List.of(lines).subList(0, lines.length / 2));
+        String second = String.join("", List.of(lines).subList(lines.length / 2, lines.length));
+        try (EventProcessorFactory factory = new PickingEventProcessorFactory(config)) {
+            for (String input : List.of(first, second)) {
+                // every run starts from the state saved by the one before
+                try (StreamProcessor processor = factory.createProcessor(100, ofSeconds(1));
+                     InputStream source = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+                     ByteArrayOutputStream sink = new ByteArrayOutputStream()) {
+                    processor.process(source, sink);
+
+                    if (input == second) {
+                        String actualOutput = new String(sink.toByteArray(), StandardCharsets.UTF_8);
+                        JSONAssert.assertEquals(loadResource("happy-path-with-sorted-output.json"), actualOutput, JSONCompareMode.STRICT);
+                    }
+                }
+            }
+        }
+    }
+
     private String loadResource(String resource) throws IOException {
         try (InputStream is = getClass().getResourceAsStream(resource);
              Scanner scanner = new Scanner(is, StandardCharsets.UTF_8)) {
@@ -65,6 +197,20 @@ final class PickingEventProcessorFactoryTest {
         }
     }
 
+    /** Re-encodes the JSON lines of a resource as a single stream in the given format. */
+    private byte[] encode(String resource, DataFormat format) throws IOException {
+        if (format.isText()) return loadResource(resource).getBytes(StandardCharsets.UTF_8);
+
+        ObjectMapper mapper = new ObjectMapper(format.factory().copy());
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(encoded)) {
+            for (String line : loadResource(resource).split("\n")) {
+                if (!line.isBlank()) mapper.writeTree(generator, OBJECT_MAPPER.readTree(line));
+            }
+        }
+        return encoded.toByteArray();
+    }
+
     /**
      * Verifies that precisely one {@link EventProcessorFactory} can be service-loaded.
      */
@@ -4,19 +4,27 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import tech.picnic.assignment.model.*;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
@@ -24,8 +32,12 @@ import static java.time.ZonedDateTime.parse;
 import static java.util.stream.Collectors.toUnmodifiableList;
 import static java.util.stream.Stream.generate;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
 import static tech.picnic.assignment.model.TemperatureZone.Ambient;
 import static tech.picnic.assignment.model.TemperatureZone.Chilled;
 
@@ -54,13 +66,17 @@ class PickingStreamProcessorTest {
     @Mock
     private SourceReader sourceReader;
 
-    @InjectMocks
     private PickingStreamProcessor pickingStreamProcessor;
 
     PickingStreamProcessorTest() {
         objectMapper.registerModule(new JavaTimeModule());
     }
 
+    @BeforeEach
+    void setUp() {
+        pickingStreamProcessor = new PickingStreamProcessor(sourceReader, new PickInterner(100, 100));
+    }
+
     @Test
     @DisplayName("should filter out chilled articles")
     void testFilterChilled() throws IOException {
@@ -84,7 +100,7 @@ class PickingStreamProcessorTest {
     void testPerformance() throws IOException {
         var picks = generate(PickingStreamProcessorTest::pick).limit(1_000_000).collect(toUnmodifiableList());
 
-        when(sourceReader.readLines(any())).thenReturn(picks);
+        feed(picks);
 
         for (int i = 0; i < 10; i++) {
             var before = currentTimeMillis();
@@ -161,12 +177,110 @@ class PickingStreamProcessorTest {
                 .containsExactly("NOODLE");
     }
 
+    @Test
+    @DisplayName("should count every retained pick once, although the state writes it again with every call")
+    void testStateMetrics(@TempDir Path directory) throws IOException {
+        var config = ProcessorConfig.builder().stateFile(directory.resolve("state.bin")).build();
+        var interner = new PickInterner(100, 100);
+        var metrics = new ProcessorMetrics();
+        feed(List.of(
+                new PickRequest("1", parse("2019-06-01T01:00:00Z"), john, noodle, 1),
+                new PickRequest("2", parse("2019-06-01T02:00:00Z"), jane, sprite, 1)
+        ));
+
+        try (var processor = new PickingStreamProcessor(sourceReader, () -> new PickAggregator(Ambient, interner), metrics, config, OutputBudget.unreserved())) {
+            processor.process(System.in, new ByteArrayOutputStream());
+            processor.process(System.in, new ByteArrayOutputStream());
+        }
+        assertThat(metrics.getRetainedPicks()).isEqualTo(4);
+        // the second call reserves time to write the picks of the first one as well
+        verify(sourceReader).readLines(any(), any(), eq(2));
+
+        var restoredMetrics = new ProcessorMetrics();
+        try (var processor = new PickingStreamProcessor(sourceReader, () -> new PickAggregator(Ambient, interner), restoredMetrics, config, OutputBudget.unreserved())) {
+            assertThat(restoredMetrics.getRetainedPicks()).isEqualTo(4);
+            processor.process(System.in, new ByteArrayOutputStream());
+        }
+        assertThat(restoredMetrics.getRetainedPicks()).isEqualTo(6);
+        verify(sourceReader).readLines(any(), any(), eq(4));
+    }
+
+    @Test
+    @DisplayName("should not keep the picks of a call which failed")
+    void testStateRollback(@TempDir Path directory) throws IOException {
+        var interner = new PickInterner(100, 100);
+        assertRollsBack(directory, () -> new PickAggregator(Ambient, interner));
+    }
+
+    @Test
+    @DisplayName("should not keep the picks of a call which failed, including those which shards have not aggregated yet")
+    void testShardedStateRollback(@TempDir Path directory) throws IOException {
+        var interner = new PickInterner(100, 100);
+        assertRollsBack(directory, () -> new ShardedAggregation(4, () -> new PickAggregator(Ambient, interner)));
+    }
+
+    private void assertRollsBack(Path directory, Supplier<Aggregation> aggregations) throws IOException {
+        var config = ProcessorConfig.builder().stateFile(directory.resolve("state.bin")).build();
+        try (var processor = new PickingStreamProcessor(sourceReader, aggregations, new ProcessorMetrics(), config, OutputBudget.unreserved())) {
+            feed(List.of(new PickRequest("1", parse("2019-06-01T01:00:00Z"), john, noodle, 1)));
+            processor.process(System.in, new ByteArrayOutputStream());
+
+            doAnswer(invocation -> {
+                Consumer<PickEvent> consumer = invocation.getArgument(1);
+                consumer.accept(PickEvent.of(new PickRequest("2", parse("2019-06-01T02:00:00Z"), jane, sprite, 1)));
+                throw new UncheckedIOException(new IOException("The source failed"));
+            }).when(sourceReader).readLines(any(), any(), anyInt());
+            assertThatThrownBy(() -> processor.process(System.in, new ByteArrayOutputStream())).hasMessage("The source failed");
+
+            feed(List.of(new PickRequest("3", parse("2019-06-01T03:00:00Z"), john, potato, 1)));
+            var output = new ByteArrayOutputStream();
+            processor.process(System.in, output);
+            List<PickerWithPicks> actualOutput = objectMapper.readValue(output.toByteArray(), pickerWithPicksTypeReference);
+            assertThat(actualOutput)
+                    .flatExtracting(PickerWithPicks::getPicks)
+                    .extracting(PickResponse::getName)
+                    .containsExactly("NOODLE", "POTATO");
+        }
+    }
+
+    @Test
+    @DisplayName("should let concurrent calls take turns on the state")
+    void testStateConcurrency(@TempDir Path directory) throws Exception {
+        var config = ProcessorConfig.builder().stateFile(directory.resolve("state.bin")).build();
+        var interner = new PickInterner(100, 100);
+        var metrics = new ProcessorMetrics();
+        feed(generate(PickingStreamProcessorTest::pick).limit(1_000).collect(toUnmodifiableList()));
+
+        var executor = Executors.newFixedThreadPool(4);
+        try (var processor = new PickingStreamProcessor(sourceReader, () -> new PickAggregator(Ambient, interner), metrics, config, OutputBudget.unreserved())) {
+            var calls = new ArrayList<Future<?>>();
+            for (int i = 0; i < 20; i++) {
+                calls.add(executor.submit(() -> {
+                    processor.process(System.in, new ByteArrayOutputStream());
+                    return null;
+                }));
+            }
+            for (var call : calls) call.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(metrics.getRetainedPicks()).isEqualTo(20_000);
+    }
+
     private void processStream() throws IOException {
         pickingStreamProcessor.process(System.in, new ByteArrayOutputStream());
     }
 
+    private void feed(List<PickRequest> picks) {
+        doAnswer(invocation -> {
+            Consumer<PickEvent> consumer = invocation.getArgument(1);
+            picks.stream().map(PickEvent::of).forEach(consumer);
+            return null;
+        }).when(sourceReader).readLines(any(), any(), anyInt());
+    }
+
     private List<PickerWithPicks> processStream(List<PickRequest> picks) throws IOException {
-        when(sourceReader.readLines(any())).thenReturn(picks);
+        feed(picks);
 
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
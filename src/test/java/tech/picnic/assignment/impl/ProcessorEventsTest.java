@@ -0,0 +1,78 @@
+package tech.picnic.assignment.impl;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.Duration.ofSeconds;
+import static java.util.stream.Collectors.groupingBy;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProcessorEventsTest {
+
+    private static final String ambientPick = "{\"timestamp\":\"2018-12-20T11:50:48Z\",\"id\":\"2344\",\"picker\":{\"id\":\"14\",\"name\":\"Joris\",\"active_since\":\"2018-09-20T08:20:00Z\"}," +
+            "\"article\":{\"id\":\"13473\",\"name\":\"ACME Bananas\",\"temperature_zone\":\"ambient\"},\"quantity\":2}";
+
+    @Test
+    @DisplayName("should record every phase, with its counts and sizes, when enabled by the bundled settings")
+    void testEvents(@TempDir Path directory) throws Exception {
+        var input = (ambientPick + "\n" + ambientPick.replace("ambient", "chilled") + "\n{malformed}\n").getBytes(UTF_8);
+        var output = new ByteArrayOutputStream();
+
+        var events = record(ProcessorEvents.settings(), directory, input, output);
+
+        assertThat(events).containsKeys("tech.picnic.assignment.ReadBatch", "tech.picnic.assignment.Decode",
+                "tech.picnic.assignment.Aggregate", "tech.picnic.assignment.Sort", "tech.picnic.assignment.SortPicks", "tech.picnic.assignment.Serialize");
+        var lineBytes = input.length - 3;
+        assertThat(events.get("tech.picnic.assignment.ReadBatch").stream().mapToInt(event -> event.getInt("lines")).sum()).isEqualTo(3);
+        assertThat(events.get("tech.picnic.assignment.ReadBatch").stream().mapToLong(event -> event.getLong("bytes")).sum()).isEqualTo(lineBytes);
+        assertThat(events.get("tech.picnic.assignment.Decode").stream().mapToInt(event -> event.getInt("picks")).sum()).isEqualTo(1);
+        assertThat(events.get("tech.picnic.assignment.Decode").stream().mapToInt(event -> event.getInt("rejected")).sum()).isEqualTo(2);
+        assertThat(events.get("tech.picnic.assignment.Aggregate").stream().mapToInt(event -> event.getInt("picks")).sum()).isEqualTo(1);
+
+        var sort = events.get("tech.picnic.assignment.Sort");
+        assertThat(sort).hasSize(1);
+        assertThat(sort.get(0).getInt("pickers")).isEqualTo(1);
+        assertThat(sort.get(0).getInt("picks")).isEqualTo(1);
+        var sortPicks = events.get("tech.picnic.assignment.SortPicks");
+        assertThat(sortPicks.stream().mapToInt(event -> event.getInt("picks")).sum()).isEqualTo(1);
+        assertThat(sortPicks).noneMatch(event -> event.getBoolean("spill"));
+        var serialize = events.get("tech.picnic.assignment.Serialize");
+        assertThat(serialize).hasSize(1);
+        assertThat(serialize.get(0).getLong("bytes")).isEqualTo(output.size());
+    }
+
+    @Test
+    @DisplayName("should record nothing with the default settings of the JDK")
+    void testDisabledByDefault(@TempDir Path directory) throws Exception {
+        var input = (ambientPick + "\n").getBytes(UTF_8);
+
+        var events = record(Configuration.getConfiguration("default"), directory, input, new ByteArrayOutputStream());
+
+        assertThat(events.keySet()).noneMatch(name -> name.startsWith("tech.picnic.assignment."));
+    }
+
+    private static Map<String, List<RecordedEvent>> record(Configuration settings, Path directory, byte[] input, ByteArrayOutputStream output) throws Exception {
+        var file = directory.resolve("recording.jfr");
+        try (var recording = new Recording(settings);
+             var factory = new PickingEventProcessorFactory(ProcessorConfig.builder().mapFiles(false).build());
+             var processor = factory.createProcessor(100, ofSeconds(5))) {
+            recording.start();
+            processor.process(new ByteArrayInputStream(input), output);
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream().collect(groupingBy(event -> event.getEventType().getName()));
+    }
+}
@@ -0,0 +1,54 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProcessorExecutorsTest {
+
+    private final ProcessorExecutors executors = new ProcessorExecutors(2, 4);
+
+    @AfterEach
+    void tearDown() {
+        executors.close();
+    }
+
+    @Test
+    @DisplayName("should use virtual threads for blocking work only where the JDK offers them")
+    void testVirtualThreads() throws Exception {
+        var thread = executors.blocking().submit(Thread::currentThread).get();
+
+        if (Runtime.version().feature() >= 21) {
+            assertThat(executors.usesVirtualThreads()).isTrue();
+        } else {
+            assertThat(executors.usesVirtualThreads()).isFalse();
+            assertThat(thread.getName()).startsWith("picking-blocking-");
+            assertThat(thread.isDaemon()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("should reuse parse threads")
+    void testReuse() throws Exception {
+        var first = executors.parsing().submit(Thread::currentThread).get();
+        var second = executors.parsing().submit(Thread::currentThread).get();
+        var third = executors.parsing().submit(Thread::currentThread).get();
+
+        assertThat(first.getName()).startsWith("picking-parse-");
+        assertThat(third).isIn(first, second);
+    }
+
+    @Test
+    @DisplayName("should reject work once closed")
+    void testClose() {
+        executors.close();
+
+        assertThatThrownBy(() -> executors.blocking().submit(() -> {})).isInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> executors.parsing().submit(() -> {})).isInstanceOf(RejectedExecutionException.class);
+    }
+}
@@ -0,0 +1,79 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tech.picnic.assignment.impl.PickAggregator.PickerPicks;
+import tech.picnic.assignment.model.Article;
+import tech.picnic.assignment.model.Picker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.time.ZonedDateTime.parse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.picnic.assignment.model.TemperatureZone.Ambient;
+import static tech.picnic.assignment.model.TemperatureZone.Chilled;
+
+class ShardedAggregationTest {
+
+    private final PickInterner interner = new PickInterner(1_000, 1_000);
+
+    @Test
+    @DisplayName("should produce the same pickers and picks as a single aggregator")
+    void testSameAsSingleAggregator() throws IOException {
+        var random = new Random(42);
+        var pickers = new ArrayList<Picker>();
+        for (int i = 0; i < 100; i++) {
+            pickers.add(new Picker(String.valueOf(i), "picker " + i, parse("2018-01-01T00:00:00Z").plusDays(random.nextInt(10))));
+        }
+        var events = new ArrayList<PickEvent>();
+        for (int i = 0; i < 20_000; i++) {
+            var article = new Article(String.valueOf(i % 500), "article " + i % 500, i % 3 == 0 ? Chilled : Ambient);
+            events.add(new PickEvent(pickers.get(random.nextInt(pickers.size())), article, random.nextInt(10_000)));
+        }
+
+        var single = new PickAggregator(Ambient, interner);
+        events.forEach(single);
+        try (var sharded = new ShardedAggregation(4, () -> new PickAggregator(Ambient, interner))) {
+            events.forEach(sharded);
+
+            assertThat(write(sharded.sortedPickers())).isEqualTo(write(single.sortedPickers()));
+        }
+    }
+
+    @Test
+    @DisplayName("should keep accepting picks after sorting, and sort all of them again")
+    void testAcceptAfterSorting() throws IOException {
+        var john = new Picker("1", "john", parse("2018-01-01T00:00:00Z"));
+        var jane = new Picker("2", "jane", parse("2018-01-02T00:00:00Z"));
+        var article = new Article("1", "noodle", Ambient);
+        try (var sharded = new ShardedAggregation(4, () -> new PickAggregator(Ambient, interner))) {
+            sharded.accept(new PickEvent(jane, article, 2));
+            assertThat(sharded.sortedPickers()).hasSize(1);
+
+            sharded.accept(new PickEvent(john, article, 3));
+            sharded.accept(new PickEvent(jane, article, 1));
+            var pickers = sharded.sortedPickers();
+
+            assertThat(pickers).extracting(PickerPicks::size).containsExactly(1, 2);
+            assertThat(write(pickers)).isEqualTo(write(sharded.sortedPickers()));
+        }
+    }
+
+    @Test
+    @DisplayName("should produce no pickers when no picks were accepted")
+    void testEmpty() {
+        try (var sharded = new ShardedAggregation(4, () -> new PickAggregator(Ambient, interner))) {
+            assertThat(sharded.sortedPickers()).isEmpty();
+        }
+    }
+
+    private static String write(List<PickerPicks> pickers) throws IOException {
+        var sink = new ByteArrayOutputStream();
+        new PickWriter().write(pickers, sink);
+        return sink.toString();
+    }
+}
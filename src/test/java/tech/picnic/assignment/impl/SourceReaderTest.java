@@ -1,24 +1,46 @@
 package tech.picnic.assignment.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
-import tech.picnic.assignment.model.PickRequest;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static java.lang.Math.min;
 import static java.lang.String.format;
 import static java.lang.String.join;
 import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.Duration.ofMillis;
 import static java.time.Duration.ofSeconds;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toUnmodifiableList;
 import static java.util.stream.Stream.generate;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static tech.picnic.assignment.impl.Utilities.OBJECT_MAPPER;
+import static tech.picnic.assignment.model.TemperatureZone.Ambient;
 
 class SourceReaderTest {
 
@@ -94,18 +116,329 @@ class SourceReaderTest {
 
         var now = currentTimeMillis();
 
-        readInputStream(lines, 100, ofSeconds(3));
+        var actualOutput = readInputStream(new SourceReader(100, ofSeconds(3), pickDecoder()), openEndedInputStream(lines));
 
-        assertThat(ofMillis(currentTimeMillis() - now)).isBetween(ofSeconds(2), ofSeconds(4));
+        assertThat(actualOutput).hasSize(1);
+        assertThat(ofMillis(currentTimeMillis() - now)).isBetween(ofSeconds(3), ofSeconds(4));
+    }
+
+    @Test
+    @DisplayName("should respect sub-second maxTime")
+    void testSubSecondMaxTime() throws IOException {
+        var lines = List.of(pickLine);
+
+        var now = currentTimeMillis();
+
+        readInputStream(new SourceReader(100, ofMillis(300), pickDecoder()), openEndedInputStream(lines));
+
+        assertThat(ofMillis(currentTimeMillis() - now)).isBetween(ofMillis(300), ofMillis(800));
+    }
+
+    @Test
+    @DisplayName("should free the producer's thread on timeout, even if the source ignores interrupts")
+    void testUninterruptibleSource() throws InterruptedException {
+        var release = new CountDownLatch(1);
+        try (var executors = new ProcessorExecutors(1, 2)) {
+            assumeFalse(executors.usesVirtualThreads());
+            var blocking = (ThreadPoolExecutor) executors.blocking();
+            var sourceReader = new SourceReader(100, ofSeconds(1), pickDecoder(), ProcessorConfig.builder().build(), new ProcessorMetrics(), executors, OutputBudget.unreserved());
+
+            var now = currentTimeMillis();
+            var picks = readInputStream(sourceReader, uninterruptibleInputStream(List.of(pickLine), release));
+
+            assertThat(picks).hasSize(1);
+            assertThat(ofMillis(currentTimeMillis() - now)).isLessThan(ofSeconds(2));
+            // only the read which the source ignores the interrupt of is left, and it ends with the source
+            var deadline = currentTimeMillis() + 5_000;
+            while (blocking.getActiveCount() > 1 && currentTimeMillis() < deadline) Thread.sleep(10);
+            assertThat(blocking.getActiveCount()).isEqualTo(1);
+            release.countDown();
+            deadline = currentTimeMillis() + 5_000;
+            while (blocking.getActiveCount() > 0 && currentTimeMillis() < deadline) Thread.sleep(10);
+            assertThat(blocking.getActiveCount()).isZero();
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("should fail a read which could block once no blocking thread is left to wait for it")
+    void testNoBlockingThreadLeft() {
+        var release = new CountDownLatch(1);
+        try (var executors = new ProcessorExecutors(1, 1)) {
+            assumeFalse(executors.usesVirtualThreads());
+            executors.blocking().submit(() -> {
+                release.await();
+                return null;
+            });
+            var source = new InterruptibleSource(uninterruptibleInputStream(List.of(), release), executors.blocking());
+
+            assertThatThrownBy(source::read).isInstanceOf(IOException.class).hasMessage("No thread is left to wait for the source");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("should stop reading at the end of the stream and not wait for maxTime to elapse")
+    void testCloseAfterEndOfStream() throws IOException {
+        var lines = List.of(pickLine, pickLine);
+        // the first read loads the decoder's and the reader's classes, which takes longer than the read itself
+        readInputStream(lines, 100, ofSeconds(5));
+
+        var now = currentTimeMillis();
+
+        var actualOutput = readInputStream(lines, 100, ofSeconds(5));
+
+        assertThat(actualOutput).hasSize(2);
+        assertThat(ofMillis(currentTimeMillis() - now)).isLessThan(ofSeconds(1));
+    }
+
+    @Test
+    @DisplayName("should decode in parallel without changing maxEvents or the order of events")
+    void testParallelDecoding() {
+        var lines = IntStream.range(0, 5_000)
+                .mapToObj(i -> pickLine.replace("2018-12-20T11:50:48Z", Instant.parse("2018-12-20T00:00:00Z").plusSeconds(i).toString()))
+                .collect(toUnmodifiableList());
+        var input = join("", lines).getBytes();
+
+        var sequential = readInputStream(new SourceReader(3_333, ofSeconds(30), pickDecoder()), new ByteArrayInputStream(input));
+        var parallel = readInputStream(parallelReader(3_333), new ByteArrayInputStream(input));
+
+        assertThat(parallel).hasSize(3_333).isEqualTo(sequential);
+        assertThat(parallel).extracting(PickEvent::getTimestamp).isSorted();
+    }
+
+    @Test
+    @DisplayName("should read a memory-mapped file like a stream, and continue where it stopped")
+    void testMappedFile(@TempDir Path directory) throws IOException {
+        var input = IntStream.range(0, 1_000)
+                .mapToObj(i -> pickLine.replace("2018-12-20T11:50:48Z", Instant.parse("2018-12-20T00:00:00Z").plusSeconds(i).toString()))
+                .map(line -> line.replace("\n", List.of("\n", "\r\n", "\n\n", "\r").get(line.hashCode() & 3)))
+                .collect(joining("", "\n", "{malformed}"));
+        var file = Files.writeString(directory.resolve("picks.json-stream"), input);
+        var expected = readInputStream(new SourceReader(2_000, ofSeconds(30), pickDecoder()), new ByteArrayInputStream(input.getBytes()));
+
+        try (var source = new FileInputStream(file.toFile())) {
+            var first = readInputStream(new SourceReader(600, ofSeconds(30), pickDecoder()), source);
+            var rest = readInputStream(parallelReader(600), source);
+
+            assertThat(first).hasSize(600);
+            assertThat(rest).hasSize(400);
+            assertThat(Stream.concat(first.stream(), rest.stream())).containsExactlyElementsOf(expected);
+            assertThat(source.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    @DisplayName("should split lines on raw bytes across reads, and carry a split batch over to the next window")
+    void testByteLines() {
+        var longName = "ACME " + "Bananas ".repeat(10_000);
+        var input = IntStream.range(0, 1_000)
+                .mapToObj(i -> pickLine.replace("2018-12-20T11:50:48Z", Instant.parse("2018-12-20T00:00:00Z").plusSeconds(i).toString()))
+                .map(line -> line.hashCode() % 100 == 0 ? line.replace("ACME Bananas", longName) : line)
+                .map(line -> line.replace("\n", List.of("\n", "\r\n", "\n\n", "\r").get(line.hashCode() & 3)))
+                .collect(joining("", "\r\n", "{\"timestamp\":\"2018-12-20T11:50:48Z\", \"name\":\"sprîte\"}"))
+                .getBytes(UTF_8);
+        var trickle = new ByteArrayInputStream(input) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, min(len, 7_001));
+            }
+        };
+        var sourceReader = new SourceReader(600, ofSeconds(30), pickDecoder());
+        var first = new ArrayList<PickEvent>();
+        var rest = new ArrayList<PickEvent>();
+
+        try (var session = sourceReader.open(trickle)) {
+            assertThat(session.readWindow(first::add)).isTrue();
+            assertThat(session.readWindow(rest::add)).isFalse();
+        }
+
+        var decoder = pickDecoder();
+        var expected = Stream.of(new String(input, UTF_8).split("[\\r\\n]+"))
+                .flatMap(line -> decoder.decode(line).stream())
+                .collect(toUnmodifiableList());
+        assertThat(first).hasSize(600);
+        assertThat(rest).hasSize(400);
+        assertThat(Stream.concat(first.stream(), rest.stream())).containsExactlyElementsOf(expected);
+        assertThat(expected).filteredOn(pick -> pick.getArticle().getName().equals(longName)).isNotEmpty();
     }
 
-    private List<PickRequest> readInputStream(List<String> lines, int maxEvents, Duration maxTime) throws IOException {
-        var sourceReader = new SourceReader(maxEvents, maxTime);
+    @ParameterizedTest
+    @EnumSource(value = DataFormat.class, names = {"SMILE", "CBOR"})
+    @DisplayName("should detect binary records, skipping rejected ones, even in a file")
+    void testBinaryRecords(DataFormat format, @TempDir Path directory) throws IOException {
+        var lines = IntStream.range(0, 1_000)
+                .mapToObj(i -> pickLine.replace("2018-12-20T11:50:48Z", Instant.parse("2018-12-20T00:00:00Z").plusSeconds(i).toString()))
+                .map(line -> List.of(line, line, line.replace("ambient", "chilled"), line.replace("\"quantity\"", "\"unknown\"")).get(line.hashCode() & 3))
+                .collect(toUnmodifiableList());
+        var file = Files.write(directory.resolve("picks.bin"), binaryRecords(format, lines));
+        var picks = new ArrayList<PickEvent>();
+
+        try (var source = new FileInputStream(file.toFile());
+             var session = new SourceReader(600, ofSeconds(30), pickDecoder()).open(source)) {
+            assertThat(session.readWindow(picks::add)).isTrue();
+            assertThat(session.readWindow(picks::add)).isFalse();
+        }
+
+        var decoder = pickDecoder();
+        var expected = lines.stream().flatMap(line -> decoder.decode(line).stream()).collect(toUnmodifiableList());
+        assertThat(expected).hasSizeBetween(400, 600);
+        assertThat(picks).containsExactlyElementsOf(expected);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = DataFormat.class, names = {"SMILE", "CBOR"})
+    @DisplayName("should decode no binary records beyond maxEvents")
+    void testBinaryRecordsMaxEvents(DataFormat format) throws IOException {
+        var lines = generate(() -> pickLine.replace("\"quantity\"", "\"unknown\"")).limit(1_000).collect(toUnmodifiableList());
+        var metrics = new ProcessorMetrics();
+        var decoder = new PickDecoder(ProcessorConfig.builder().build(), new PickInterner(100, 100), metrics, DeadLetterSink.discarding());
+
+        new SourceReader(10, ofSeconds(30), decoder).readLines(new ByteArrayInputStream(binaryRecords(format, lines)), pick -> {});
+
+        assertThat(metrics.getMalformedLines()).isEqualTo(10);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = DataFormat.class, names = {"SMILE", "CBOR"})
+    @DisplayName("should hand over decoded binary records before waiting for the rest of a partial one")
+    void testPartialBinaryRecord(DataFormat format) throws IOException {
+        var bytes = binaryRecords(format, generate(SourceReaderTest::pick).limit(4).collect(toUnmodifiableList()));
+        var source = new SequenceInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 10), openEndedInputStream(List.of()));
+
+        var picks = readInputStream(new SourceReader(10, ofSeconds(2), pickDecoder()), source);
+
+        assertThat(picks).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("should stop reading early enough to leave the reserved time for the output")
+    void testOutputBudget() {
+        var lines = generate(SourceReaderTest::pick).limit(1_000).collect(toUnmodifiableList());
+        var budget = OutputBudget.adaptive();
+        budget.record(1_000, 1_000_000_000L);
+        var sourceReader = new SourceReader(2_000, ofSeconds(1), pickDecoder(), ProcessorConfig.builder().build(), new ProcessorMetrics(), ProcessorExecutors.defaults(), budget);
+
+        var start = currentTimeMillis();
+        var picks = readInputStream(sourceReader, openEndedInputStream(lines));
+
+        assertThat(picks).hasSizeGreaterThan(0).hasSizeLessThan(1_000);
+        assertThat(currentTimeMillis() - start).isLessThan(1_000);
+    }
+
+    @Test
+    @DisplayName("should read several sources concurrently, applying maxEvents to all of them together")
+    void testMergedMaxEvents() {
+        var lines = generate(SourceReaderTest::pick).limit(300).collect(toUnmodifiableList());
+        var sources = List.of(openEndedInputStream(lines), new ByteArrayInputStream(join("", lines).getBytes()), openEndedInputStream(lines));
+        var picks = new ArrayList<PickEvent>();
+
+        new SourceReader(800, ofSeconds(30), pickDecoder()).readMergedLines(sources, picks::add);
+
+        assertThat(picks).hasSize(800);
+    }
+
+    @Test
+    @DisplayName("should decode no events beyond a maxEvents smaller than one batch, of any source")
+    void testMergedMaxEventsWithinBatch() throws IOException {
+        var lines = generate(() -> pickLine.replace("\"quantity\"", "\"unknown\"")).limit(BatchSizer.MIN_LINES * 4).collect(toUnmodifiableList());
+        var sources = List.<InputStream>of(
+                new ByteArrayInputStream(join("", lines).getBytes()),
+                new ByteArrayInputStream(binaryRecords(DataFormat.SMILE, lines)),
+                new ByteArrayInputStream(binaryRecords(DataFormat.CBOR, lines)));
+        var metrics = new ProcessorMetrics();
+        var decoder = new PickDecoder(ProcessorConfig.builder().build(), new PickInterner(100, 100), metrics, DeadLetterSink.discarding());
+
+        new SourceReader(BatchSizer.MIN_LINES / 2, ofSeconds(30), decoder).readMergedLines(sources, pick -> {});
+
+        assertThat(metrics.getMalformedLines()).isEqualTo(BatchSizer.MIN_LINES / 2);
+    }
+
+    @Test
+    @DisplayName("should stop reading several sources once the last one of them ends")
+    void testMergedEndOfStream() {
+        var lines = generate(SourceReaderTest::pick).limit(300).collect(toUnmodifiableList());
+        var sources = Stream.generate(() -> new ByteArrayInputStream(join("", lines).getBytes())).limit(3).collect(toUnmodifiableList());
+        var picks = new ArrayList<PickEvent>();
+
+        var start = currentTimeMillis();
+        new SourceReader(2_000, ofSeconds(30), pickDecoder()).readMergedLines(List.copyOf(sources), picks::add);
+
+        assertThat(currentTimeMillis() - start).isLessThan(10_000);
+        assertThat(picks).hasSize(900);
+    }
+
+    private List<PickEvent> readInputStream(List<String> lines, int maxEvents, Duration maxTime) throws IOException {
+        var sourceReader = new SourceReader(maxEvents, maxTime, pickDecoder());
 
         var input = join("\n", lines);
 
         InputStream inputStream = new ByteArrayInputStream(input.getBytes());
 
-        return sourceReader.readLines(inputStream);
+        return readInputStream(sourceReader, inputStream);
+    }
+
+    private static SourceReader parallelReader(int maxEvents) {
+        var config = ProcessorConfig.builder().parseWorkers(4).build();
+        return new SourceReader(maxEvents, ofSeconds(30), pickDecoder(), config, new ProcessorMetrics(), ProcessorExecutors.defaults(), OutputBudget.unreserved());
+    }
+
+    private static byte[] binaryRecords(DataFormat format, List<String> lines) throws IOException {
+        var mapper = new ObjectMapper(format.factory().copy());
+        var output = new ByteArrayOutputStream();
+        try (var generator = mapper.getFactory().createGenerator(output)) {
+            for (var line : lines) mapper.writeTree(generator, OBJECT_MAPPER.readTree(line));
+        }
+        return output.toByteArray();
+    }
+
+    private static PickDecoder pickDecoder() {
+        return new PickDecoder(Ambient, new PickInterner(100, 100));
+    }
+
+    private static List<PickEvent> readInputStream(SourceReader sourceReader, InputStream inputStream) {
+        var picks = new ArrayList<PickEvent>();
+
+        sourceReader.readLines(inputStream, picks::add);
+
+        return picks;
+    }
+
+    /** Returns a stream which serves the given lines and then blocks until released, ignoring interrupts like standard input does. */
+    private static InputStream uninterruptibleInputStream(List<String> lines, CountDownLatch release) {
+        var idleStream = new InputStream() {
+            @Override
+            public int read() {
+                while (true) {
+                    try {
+                        release.await();
+                        return -1;
+                    } catch (InterruptedException e) {
+                        // ignored, as a read of standard input would
+                    }
+                }
+            }
+        };
+
+        return new SequenceInputStream(new ByteArrayInputStream(join("\n", lines).getBytes()), idleStream);
+    }
+
+    /** Returns a stream which serves the given lines and then blocks, like an idle socket would. */
+    private static InputStream openEndedInputStream(List<String> lines) {
+        var idleStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return -1;
+            }
+        };
+
+        return new SequenceInputStream(new ByteArrayInputStream(join("\n", lines).getBytes()), idleStream);
     }
 }
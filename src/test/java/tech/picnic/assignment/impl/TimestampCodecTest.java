@@ -0,0 +1,64 @@
+package tech.picnic.assignment.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import static java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimestampCodecTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2018-12-20T11:50:48Z",
+            "2018-12-20T11:50:48.5Z",
+            "2018-12-20T11:50:48.123456789Z",
+            "2018-12-20T12:50:48.250+01:00",
+            "2018-12-20T01:20:48-10:30",
+            "2016-02-29T23:59:59.999+18:00",
+            "1970-01-01T00:00:00Z",
+            "1969-12-31T23:59:59.000000001Z",
+            "2018-12-20t11:50:48z",
+            "2018-12-20T11:50:48+01:00[Europe/Amsterdam]",
+            "2018-12-20T11:50Z"
+    })
+    @DisplayName("should parse timestamps into the same instant as java.time")
+    void testParse(String text) {
+        var expected = ZonedDateTime.parse(text).toInstant();
+
+        assertThat(TimestampCodec.parse(text)).isEqualTo(expected.getEpochSecond() * 1_000_000_000L + expected.getNano());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "yesterday", "2018-12-20", "2018-02-29T11:50:48Z", "2018-12-20T24:00:00Z",
+            "2018-12-20T11:50:48.1234567891Z", "2018-12-20T11:50:48+19:00", "2018-12-20T11:50:48", "3018-12-20T11:50:48Z"})
+    @DisplayName("should reject invalid and unsupported timestamps")
+    void testParseInvalid(String text) {
+        assertThatThrownBy(() -> TimestampCodec.parse(text)).isInstanceOf(DateTimeException.class);
+    }
+
+    @Test
+    @DisplayName("should format timestamps like jackson-datatype-jsr310 formats UTC date-times")
+    void testFormat() {
+        var random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            var epochNanos = random.nextLong();
+            if (i % 3 == 0) epochNanos -= epochNanos % 1_000_000_000L;
+            if (i % 3 == 1) epochNanos -= epochNanos % 1_000_000L;
+
+            var expected = ISO_OFFSET_DATE_TIME.format(Instant.ofEpochSecond(0, epochNanos).atZone(ZoneOffset.UTC));
+
+            assertThat(TimestampCodec.format(epochNanos)).isEqualTo(expected);
+            assertThat(TimestampCodec.parse(expected)).isEqualTo(epochNanos);
+        }
+    }
+}